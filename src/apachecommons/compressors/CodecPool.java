@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Shared pool of zlib codecs and byte buffers.
+ *
+ * Each Inflater and Deflater holds native zlib state that is only released by
+ * end() or by garbage collection. Programs that open many small compressed
+ * files would otherwise create and discard such state for every file. The
+ * compressor streams therefore take codecs and buffers from this pool and
+ * give them back when they are closed.
+ *
+ * All pooled codecs use raw deflate data (nowrap), as needed for gzip and
+ * BGZF. The pool is bounded: at most a fixed number of idle objects of each
+ * kind are kept, and surplus codecs are ended when they are returned. The
+ * methods are thread-safe.
+ *
+ * @author Tomasz Konopka
+ */
+public final class CodecPool {
+
+    /**
+     * kinds of pooled objects, for getHits() and getMisses()
+     */
+    public static final int INFLATER = 0;
+    public static final int DEFLATER = 1;
+    public static final int BUFFER = 2;
+    // maximal number of idle objects of each kind (per level, per size)
+    private static final int CAPACITY = Math.max(16, 2 * Runtime.getRuntime().availableProcessors());
+    private static final ArrayBlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<Inflater>(CAPACITY);
+    // deflaters for levels -1 (default) to 9, at index level+1
+    private static final ArrayBlockingQueue<Deflater>[] deflaters = makeDeflaterQueues();
+    private static final ConcurrentHashMap<Integer, ArrayBlockingQueue<byte[]>> buffers
+            = new ConcurrentHashMap<Integer, ArrayBlockingQueue<byte[]>>();
+    private static final AtomicLongArray hits = new AtomicLongArray(3);
+    private static final AtomicLongArray misses = new AtomicLongArray(3);
+
+    private CodecPool() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayBlockingQueue<Deflater>[] makeDeflaterQueues() {
+        ArrayBlockingQueue<Deflater>[] ans = new ArrayBlockingQueue[11];
+        for (int i = 0; i < ans.length; i++) {
+            ans[i] = new ArrayBlockingQueue<Deflater>(CAPACITY);
+        }
+        return ans;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * an inflater for raw deflate data, ready for use
+     */
+    public static Inflater getInflater() {
+        Inflater ans = inflaters.poll();
+        if (ans == null) {
+            misses.incrementAndGet(INFLATER);
+            return new Inflater(true);
+        }
+        hits.incrementAndGet(INFLATER);
+        return ans;
+    }
+
+    /**
+     * gives an inflater back to the pool. The inflater must not be used
+     * afterward.
+     *
+     * @param inf
+     *
+     * inflater obtained from getInflater()
+     */
+    public static void returnInflater(Inflater inf) {
+        if (inf == null) {
+            return;
+        }
+        inf.reset();
+        if (!inflaters.offer(inf)) {
+            inf.end();
+        }
+    }
+
+    /**
+     *
+     * @param level
+     *
+     * compression level, as in java.util.zip.Deflater
+     *
+     * @return
+     *
+     * a deflater producing raw deflate data, ready for use
+     */
+    public static Deflater getDeflater(int level) {
+        checkLevel(level);
+        Deflater ans = deflaters[level + 1].poll();
+        if (ans == null) {
+            misses.incrementAndGet(DEFLATER);
+            return new Deflater(level, true);
+        }
+        hits.incrementAndGet(DEFLATER);
+        return ans;
+    }
+
+    /**
+     * gives a deflater back to the pool. The deflater must not be used
+     * afterward.
+     *
+     * @param deflater
+     *
+     * deflater obtained from getDeflater()
+     *
+     * @param level
+     *
+     * the level used with getDeflater()
+     */
+    public static void returnDeflater(Deflater deflater, int level) {
+        if (deflater == null) {
+            return;
+        }
+        checkLevel(level);
+        deflater.reset();
+        if (!deflaters[level + 1].offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static void checkLevel(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+    }
+
+    /**
+     *
+     * @param size
+     * @return
+     *
+     * an array of exactly the given size. The contents are arbitrary.
+     */
+    public static byte[] getBuffer(int size) {
+        ArrayBlockingQueue<byte[]> queue = buffers.get(size);
+        byte[] ans = queue == null ? null : queue.poll();
+        if (ans == null) {
+            misses.incrementAndGet(BUFFER);
+            return new byte[size];
+        }
+        hits.incrementAndGet(BUFFER);
+        return ans;
+    }
+
+    /**
+     * gives an array back to the pool. The array must not be used afterward.
+     *
+     * @param buf
+     */
+    public static void returnBuffer(byte[] buf) {
+        if (buf == null) {
+            return;
+        }
+        ArrayBlockingQueue<byte[]> queue = buffers.get(buf.length);
+        if (queue == null) {
+            buffers.putIfAbsent(buf.length, new ArrayBlockingQueue<byte[]>(CAPACITY));
+            queue = buffers.get(buf.length);
+        }
+        queue.offer(buf);
+    }
+
+    /**
+     *
+     * @param kind
+     *
+     * INFLATER, DEFLATER, or BUFFER
+     *
+     * @return
+     *
+     * number of requests served from the pool
+     */
+    public static long getHits(int kind) {
+        return hits.get(kind);
+    }
+
+    /**
+     *
+     * @param kind
+     *
+     * INFLATER, DEFLATER, or BUFFER
+     *
+     * @return
+     *
+     * number of requests that required a new object
+     */
+    public static long getMisses(int kind) {
+        return misses.get(kind);
+    }
+}
@@ -27,6 +27,7 @@ package apachecommons.compressors.bzip2;
 import apachecommons.compressors.CompressorInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * An input stream that decompresses from the BZip2 format to be read as any other stream.
@@ -54,7 +55,7 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
 
     private boolean blockRandomised;
 
-    private int bsBuff;
+    private long bsBuff;
     private int bsLive;
     private final CRC crc = new CRC();
 
@@ -63,8 +64,22 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
     private InputStream in;
     private final boolean decompressConcatenated;
 
+    /**
+     * If true, decoding stops after one block (used by parallel
+     * decompression).
+     */
+    private final boolean singleBlock;
+
     private int currentChar = -1;
 
+    /**
+     * Number of bits resolved by a single lookup when decoding Huffman codes,
+     * and the longest code that is expected.
+     */
+    private static final int LOOKUP_BITS = 10;
+    private static final int LOOKUP_MASK = (1 << LOOKUP_BITS) - 1;
+    private static final int MAX_DECODE_LEN = 20;
+
     private static final int EOF = 0;
     private static final int START_BLOCK_STATE = 1;
     private static final int RAND_PART_A_STATE = 2;
@@ -133,12 +148,61 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
 
         this.in = in;
         this.decompressConcatenated = decompressConcatenated;
+        this.singleBlock = false;
 
         init(true);
         initBlock();
         setupBlock();
     }
 
+    /**
+     * Constructs a decoder for a single block, used by parallel
+     * decompression. The compressed bits of the block are read in the
+     * constructor; reading then returns the contents of the block and the
+     * block CRC is checked at its end.
+     *
+     * @param in
+     *            data holding the block
+     * @param blockSize
+     *            the blockSize as 100k units.
+     * @param skipBits
+     *            number of bits to skip before the block magic (0 to 7)
+     *
+     * @throws IOException
+     *             if the block is malformed or an I/O error occurs.
+     */
+    BZip2CompressorInputStream(final InputStream in, final int blockSize,
+                               final int skipBits) throws IOException {
+        super();
+
+        this.in = in;
+        this.decompressConcatenated = false;
+        this.singleBlock = true;
+        this.blockSize100k = blockSize;
+
+        bsR(skipBits);
+        initBlock();
+        if (this.currentState != START_BLOCK_STATE) {
+            throw new IOException("bad block header");
+        }
+        setupBlock();
+    }
+
+    /**
+     * @return the number of bits that have been read from the input but not
+     *         used yet
+     */
+    int getUnusedBits() {
+        return this.bsLive;
+    }
+
+    /**
+     * @return the CRC stored in the header of the current block
+     */
+    int getStoredBlockCRC() {
+        return this.storedBlockCRC;
+    }
+
     /** {@inheritDoc} */
     @Override
     public int read() throws IOException {
@@ -175,8 +239,17 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
 
         final int hi = offs + len;
         int destOffs = offs;
-        for (int b; (destOffs < hi) && ((b = read0()) >= 0);) {
-            dest[destOffs++] = (byte) b;
+        while (destOffs < hi) {
+            if (this.currentState == NO_RAND_PART_B_STATE
+                || this.currentState == NO_RAND_PART_C_STATE) {
+                destOffs = readNoRand(dest, destOffs, hi);
+            } else {
+                final int b = read0();
+                if (b < 0) {
+                    break;
+                }
+                dest[destOffs++] = (byte) b;
+            }
         }
 
         int c = (destOffs == offs) ? -1 : (destOffs - offs);
@@ -238,6 +311,95 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         return retChar;
     }
 
+    /**
+     * Copies output of a non-randomised block into an array. This follows the
+     * same steps as setupNoRandPartA, B and C, but keeps the state in local
+     * variables.
+     *
+     * @return the offset after the last byte written
+     */
+    private int readNoRand(final byte[] dest, int destOffs, final int hi)
+        throws IOException {
+        final int[] tt = this.data.tt;
+        final int lastShadow = this.last;
+        int tPos = this.su_tPos;
+        int i2 = this.su_i2;
+        int count = this.su_count;
+        int ch2 = this.su_ch2;
+        int chPrev = this.su_chPrev;
+        int j2 = this.su_j2;
+        int z = this.su_z;
+        int state = this.currentState;
+        int crcShadow = this.crc.getGlobalCRC();
+
+        // the current char has been computed and included in the CRC
+        dest[destOffs++] = (byte) this.currentChar;
+
+        boolean blockEnd = false;
+        while (true) {
+            if (state == NO_RAND_PART_B_STATE) {
+                if (ch2 != chPrev) {
+                    count = 1;
+                    state = NO_RAND_PART_A_STATE;
+                } else if (++count >= 4) {
+                    z = tt[tPos];
+                    tPos = z >>> 8;
+                    z &= 0xff;
+                    j2 = 0;
+                    state = NO_RAND_PART_C_STATE;
+                } else {
+                    state = NO_RAND_PART_A_STATE;
+                }
+            }
+            if (state == NO_RAND_PART_C_STATE && j2 >= z) {
+                i2++;
+                count = 0;
+                state = NO_RAND_PART_A_STATE;
+            }
+
+            final byte next;
+            if (state == NO_RAND_PART_A_STATE) {
+                if (i2 > lastShadow) {
+                    blockEnd = true;
+                    break;
+                }
+                chPrev = ch2;
+                ch2 = tt[tPos];
+                tPos = ch2 >>> 8;
+                ch2 &= 0xff;
+                i2++;
+                state = NO_RAND_PART_B_STATE;
+                next = (byte) ch2;
+            } else {
+                // repeated char in state NO_RAND_PART_C_STATE
+                j2++;
+                next = (byte) ch2;
+            }
+            crcShadow = CRC.updateCRC(crcShadow, next);
+            if (destOffs == hi) {
+                this.currentChar = ch2;
+                break;
+            }
+            dest[destOffs++] = next;
+        }
+
+        this.su_tPos = tPos;
+        this.su_i2 = i2;
+        this.su_count = count;
+        this.su_ch2 = ch2;
+        this.su_chPrev = chPrev;
+        this.su_j2 = j2;
+        this.su_z = (char) z;
+        this.currentState = state;
+        this.crc.setGlobalCRC(crcShadow);
+
+        if (blockEnd) {
+            // finishes the block and sets up the next one
+            setupNoRandPartA();
+        }
+        return destOffs;
+    }
+
     private boolean init(boolean isFirstStream) throws IOException {
         if (null == in) {
             throw new IOException("No InputStream");
@@ -379,7 +541,7 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
 
     private int bsR(final int n) throws IOException {
         int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
 
         if (bsLiveShadow < n) {
             final InputStream inShadow = this.in;
@@ -398,12 +560,12 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         }
 
         this.bsLive = bsLiveShadow - n;
-        return (bsBuffShadow >> (bsLiveShadow - n)) & ((1 << n) - 1);
+        return (int) (bsBuffShadow >> (bsLiveShadow - n)) & ((1 << n) - 1);
     }
 
     private boolean bsGetBit() throws IOException {
         int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
 
         if (bsLiveShadow < 1) {
             int thech = this.in.read();
@@ -562,6 +724,7 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         final int[][] limit = dataShadow.limit;
         final int[][] base = dataShadow.base;
         final int[][] perm = dataShadow.perm;
+        final int[][] lookup = dataShadow.lookup;
 
         for (int t = 0; t < nGroups; t++) {
             int minLen = 32;
@@ -578,10 +741,39 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
             }
             hbCreateDecodeTables(limit[t], base[t], perm[t], len[t], minLen,
                                  maxLen, alphaSize);
+            hbCreateLookupTable(lookup[t], len_t, minLen, maxLen, alphaSize);
             minLens[t] = minLen;
         }
     }
 
+    /**
+     * Fills a table indexed by the next LOOKUP_BITS bits of input. Entries
+     * hold (symbol << 5 | code length) for codes of up to LOOKUP_BITS bits,
+     * and zero for prefixes of longer codes, which are then decoded through
+     * limit, base and perm.
+     */
+    private static void hbCreateLookupTable(final int[] lookup,
+                                            final char[] length, final int minLen, final int maxLen,
+                                            final int alphaSize) {
+        Arrays.fill(lookup, 0);
+        // codes are canonical: assigned in order of length, then symbol
+        for (int i = minLen, code = 0; i <= maxLen; i++) {
+            for (int j = 0; j < alphaSize; j++) {
+                if (length[j] == i) {
+                    if (i > 0 && i <= LOOKUP_BITS) {
+                        final int from = code << (LOOKUP_BITS - i);
+                        final int to = from + (1 << (LOOKUP_BITS - i));
+                        if (to <= lookup.length) {
+                            Arrays.fill(lookup, from, to, (j << 5) | i);
+                        }
+                    }
+                    code++;
+                }
+            }
+            code <<= 1;
+        }
+    }
+
     private void getAndMoveToFrontDecode() throws IOException {
         this.origPtr = bsR(24);
         recvDecodingTables();
@@ -592,7 +784,8 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         final int[] unzftab = dataShadow.unzftab;
         final byte[] selector = dataShadow.selector;
         final byte[] seqToUnseq = dataShadow.seqToUnseq;
-        final char[] yy = dataShadow.getAndMoveToFrontDecode_yy;
+        final byte[] yy = dataShadow.getAndMoveToFrontDecode_yy;
+        final int[][] lookup = dataShadow.lookup;
         final int[] minLens = dataShadow.minLens;
         final int[][] limit = dataShadow.limit;
         final int[][] base = dataShadow.base;
@@ -605,203 +798,145 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
          * block's worth of cache misses.
          */
         for (int i = 256; --i >= 0;) {
-            yy[i] = (char) i;
             unzftab[i] = 0;
         }
 
-        int groupNo = 0;
-        int groupPos = G_SIZE - 1;
+        /*
+         * The move-to-front list holds the output bytes rather than their
+         * index in seqToUnseq, saving one lookup per symbol.
+         */
+        System.arraycopy(seqToUnseq, 0, yy, 0, 256);
+
         final int eob = this.nInUse + 1;
-        int nextSym = getAndMoveToFrontDecode0(0);
-        int bsBuffShadow = this.bsBuff;
+        long bsBuffShadow = this.bsBuff;
         int bsLiveShadow = this.bsLive;
+        boolean inputEnded = false;
         int lastShadow = -1;
-        int zt = selector[groupNo] & 0xff;
-        int[] base_zt = base[zt];
-        int[] limit_zt = limit[zt];
-        int[] perm_zt = perm[zt];
-        int minLens_zt = minLens[zt];
-
-        while (nextSym != eob) {
-            if ((nextSym == RUNA) || (nextSym == RUNB)) {
-                int s = -1;
-
-                for (int n = 1; true; n <<= 1) {
-                    if (nextSym == RUNA) {
-                        s += n;
-                    } else if (nextSym == RUNB) {
-                        s += n << 1;
-                    } else {
+        int groupNo = -1;
+        int groupPos = 0;
+        int zt = 0;
+        int[] lookup_zt = null;
+
+        // weight of the next symbol and length of a pending RUNA/RUNB run
+        int runWeight = 0;
+        int runLength = -1;
+
+        while (true) {
+            if (groupPos == 0) {
+                groupPos = G_SIZE;
+                zt = selector[++groupNo] & 0xff;
+                lookup_zt = lookup[zt];
+            }
+            groupPos--;
+
+            // keep at least one full code in the bit buffer
+            if (bsLiveShadow < MAX_DECODE_LEN && !inputEnded) {
+                do {
+                    final int thech = inShadow.read();
+                    if (thech < 0) {
+                        inputEnded = true;
                         break;
                     }
+                    bsBuffShadow = (bsBuffShadow << 8) | thech;
+                    bsLiveShadow += 8;
+                } while (bsLiveShadow <= 56);
+            }
 
-                    if (groupPos == 0) {
-                        groupPos = G_SIZE - 1;
-                        zt = selector[++groupNo] & 0xff;
-                        base_zt = base[zt];
-                        limit_zt = limit[zt];
-                        perm_zt = perm[zt];
-                        minLens_zt = minLens[zt];
-                    } else {
-                        groupPos--;
+            // most codes are resolved by a single lookup
+            final int peek = bsLiveShadow >= LOOKUP_BITS
+                ? (int) (bsBuffShadow >>> (bsLiveShadow - LOOKUP_BITS))
+                : (int) (bsBuffShadow << (LOOKUP_BITS - bsLiveShadow));
+            final int entry = lookup_zt[peek & LOOKUP_MASK];
+            int nextSym;
+            int zn;
+            if (entry != 0) {
+                nextSym = entry >>> 5;
+                zn = entry & 31;
+            } else {
+                // long code, extend bit by bit
+                final int[] limit_zt = limit[zt];
+                zn = minLens[zt];
+                if (zn < 1) {
+                    zn = 1;
+                }
+                while (true) {
+                    if (zn > MAX_DECODE_LEN) {
+                        throw new IOException("stream corrupted");
                     }
-
-                    int zn = minLens_zt;
-
-                    // Inlined:
-                    // int zvec = bsR(zn);
-                    while (bsLiveShadow < zn) {
-                        final int thech = inShadow.read();
-                        if (thech >= 0) {
-                            bsBuffShadow = (bsBuffShadow << 8) | thech;
-                            bsLiveShadow += 8;
-                            continue;
-                        } else {
-                            throw new IOException("unexpected end of stream");
-                        }
+                    if (zn > bsLiveShadow) {
+                        throw new IOException("unexpected end of stream");
                     }
-                    int zvec = (bsBuffShadow >> (bsLiveShadow - zn))
+                    final int zvec = (int) (bsBuffShadow >>> (bsLiveShadow - zn))
                         & ((1 << zn) - 1);
-                    bsLiveShadow -= zn;
-
-                    while (zvec > limit_zt[zn]) {
-                        zn++;
-                        while (bsLiveShadow < 1) {
-                            final int thech = inShadow.read();
-                            if (thech >= 0) {
-                                bsBuffShadow = (bsBuffShadow << 8) | thech;
-                                bsLiveShadow += 8;
-                                continue;
-                            } else {
-                                throw new IOException(
-                                                      "unexpected end of stream");
-                            }
-                        }
-                        bsLiveShadow--;
-                        zvec = (zvec << 1)
-                            | ((bsBuffShadow >> bsLiveShadow) & 1);
+                    if (zvec <= limit_zt[zn]) {
+                        nextSym = perm[zt][zvec - base[zt][zn]];
+                        break;
                     }
-                    nextSym = perm_zt[zvec - base_zt[zn]];
-                }
-
-                final byte ch = seqToUnseq[yy[0]];
-                unzftab[ch & 0xff] += s + 1;
-
-                while (s-- >= 0) {
-                    ll8[++lastShadow] = ch;
+                    zn++;
                 }
+            }
+            if (zn > bsLiveShadow) {
+                throw new IOException("unexpected end of stream");
+            }
+            bsLiveShadow -= zn;
 
-                if (lastShadow >= limitLast) {
-                    throw new IOException("block overrun");
+            if (nextSym <= RUNB) {
+                if (runLength < 0) {
+                    runLength = 0;
+                    runWeight = 1;
                 }
-            } else {
-                if (++lastShadow >= limitLast) {
+                runLength += runWeight << nextSym;
+                runWeight <<= 1;
+                if (runLength >= limitLast) {
                     throw new IOException("block overrun");
                 }
+                continue;
+            }
 
-                final char tmp = yy[nextSym - 1];
-                unzftab[seqToUnseq[tmp] & 0xff]++;
-                ll8[lastShadow] = seqToUnseq[tmp];
-
-                /*
-                 * This loop is hammered during decompression, hence avoid
-                 * native method call overhead of System.arraycopy for very
-                 * small ranges to copy.
-                 */
-                if (nextSym <= 16) {
-                    for (int j = nextSym - 1; j > 0;) {
-                        yy[j] = yy[--j];
-                    }
-                } else {
-                    System.arraycopy(yy, 0, yy, 1, nextSym - 1);
-                }
-
-                yy[0] = tmp;
-
-                if (groupPos == 0) {
-                    groupPos = G_SIZE - 1;
-                    zt = selector[++groupNo] & 0xff;
-                    base_zt = base[zt];
-                    limit_zt = limit[zt];
-                    perm_zt = perm[zt];
-                    minLens_zt = minLens[zt];
-                } else {
-                    groupPos--;
-                }
-
-                int zn = minLens_zt;
-
-                // Inlined:
-                // int zvec = bsR(zn);
-                while (bsLiveShadow < zn) {
-                    final int thech = inShadow.read();
-                    if (thech >= 0) {
-                        bsBuffShadow = (bsBuffShadow << 8) | thech;
-                        bsLiveShadow += 8;
-                        continue;
-                    } else {
-                        throw new IOException("unexpected end of stream");
-                    }
+            if (runLength >= 0) {
+                final byte ch = yy[0];
+                unzftab[ch & 0xff] += runLength;
+                if (lastShadow + runLength >= limitLast) {
+                    throw new IOException("block overrun");
                 }
-                int zvec = (bsBuffShadow >> (bsLiveShadow - zn))
-                    & ((1 << zn) - 1);
-                bsLiveShadow -= zn;
-
-                while (zvec > limit_zt[zn]) {
-                    zn++;
-                    while (bsLiveShadow < 1) {
-                        final int thech = inShadow.read();
-                        if (thech >= 0) {
-                            bsBuffShadow = (bsBuffShadow << 8) | thech;
-                            bsLiveShadow += 8;
-                            continue;
-                        } else {
-                            throw new IOException("unexpected end of stream");
-                        }
-                    }
-                    bsLiveShadow--;
-                    zvec = (zvec << 1) | ((bsBuffShadow >> bsLiveShadow) & 1);
+                while (runLength-- > 0) {
+                    ll8[++lastShadow] = ch;
                 }
-                nextSym = perm_zt[zvec - base_zt[zn]];
+                runLength = -1;
             }
-        }
 
-        this.last = lastShadow;
-        this.bsLive = bsLiveShadow;
-        this.bsBuff = bsBuffShadow;
-    }
+            if (nextSym == eob) {
+                break;
+            }
 
-    private int getAndMoveToFrontDecode0(final int groupNo) throws IOException {
-        final InputStream inShadow = this.in;
-        final Data dataShadow = this.data;
-        final int zt = dataShadow.selector[groupNo] & 0xff;
-        final int[] limit_zt = dataShadow.limit[zt];
-        int zn = dataShadow.minLens[zt];
-        int zvec = bsR(zn);
-        int bsLiveShadow = this.bsLive;
-        int bsBuffShadow = this.bsBuff;
+            if (++lastShadow >= limitLast) {
+                throw new IOException("block overrun");
+            }
 
-        while (zvec > limit_zt[zn]) {
-            zn++;
-            while (bsLiveShadow < 1) {
-                final int thech = inShadow.read();
+            final int nn = nextSym - 1;
+            final byte uc = yy[nn];
 
-                if (thech >= 0) {
-                    bsBuffShadow = (bsBuffShadow << 8) | thech;
-                    bsLiveShadow += 8;
-                    continue;
-                } else {
-                    throw new IOException("unexpected end of stream");
+            /*
+             * This loop is hammered during decompression, hence avoid
+             * native method call overhead of System.arraycopy for very
+             * small ranges to copy.
+             */
+            if (nn <= 16) {
+                for (int j = nn; j > 0;) {
+                    yy[j] = yy[--j];
                 }
+            } else {
+                System.arraycopy(yy, 0, yy, 1, nn);
             }
-            bsLiveShadow--;
-            zvec = (zvec << 1) | ((bsBuffShadow >> bsLiveShadow) & 1);
+            yy[0] = uc;
+
+            unzftab[uc & 0xff]++;
+            ll8[lastShadow] = uc;
         }
 
+        this.last = lastShadow;
         this.bsLive = bsLiveShadow;
         this.bsBuff = bsBuffShadow;
-
-        return dataShadow.perm[zt][zvec - dataShadow.base[zt][zn]];
     }
 
     private void setupBlock() throws IOException {
@@ -820,15 +955,23 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
             cftab[i] = c;
         }
 
+        /*
+         * Each entry of tt holds a byte of the block in its low 8 bits and the
+         * position of the next byte of output in the remaining bits, so that
+         * following the chain needs one memory access per byte.
+         */
+        for (int i = 0, lastShadow = this.last; i <= lastShadow; i++) {
+            tt[i] = ll8[i] & 0xff;
+        }
         for (int i = 0, lastShadow = this.last; i <= lastShadow; i++) {
-            tt[cftab[ll8[i] & 0xff]++] = i;
+            tt[cftab[ll8[i] & 0xff]++] |= i << 8;
         }
 
         if ((this.origPtr < 0) || (this.origPtr >= tt.length)) {
             throw new IOException("stream corrupted");
         }
 
-        this.su_tPos = tt[this.origPtr];
+        this.su_tPos = tt[this.origPtr] >>> 8;
         this.su_count = 0;
         this.su_i2 = 0;
         this.su_ch2 = 256; /* not a char and not EOF */
@@ -845,8 +988,9 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
     private void setupRandPartA() throws IOException {
         if (this.su_i2 <= this.last) {
             this.su_chPrev = this.su_ch2;
-            int su_ch2Shadow = this.data.ll8[this.su_tPos] & 0xff;
-            this.su_tPos = this.data.tt[this.su_tPos];
+            int su_ch2Shadow = this.data.tt[this.su_tPos];
+            this.su_tPos = su_ch2Shadow >>> 8;
+            su_ch2Shadow &= 0xff;
             if (this.su_rNToGo == 0) {
                 this.su_rNToGo = Rand.rNums(this.su_rTPos) - 1;
                 if (++this.su_rTPos == 512) {
@@ -862,6 +1006,10 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
             this.crc.updateCRC(su_ch2Shadow);
         } else {
             endBlock();
+            if (this.singleBlock) {
+                this.currentState = EOF;
+                return;
+            }
             initBlock();
             setupBlock();
         }
@@ -870,9 +1018,10 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
     private void setupNoRandPartA() throws IOException {
         if (this.su_i2 <= this.last) {
             this.su_chPrev = this.su_ch2;
-            int su_ch2Shadow = this.data.ll8[this.su_tPos] & 0xff;
+            int su_ch2Shadow = this.data.tt[this.su_tPos];
+            this.su_tPos = su_ch2Shadow >>> 8;
+            su_ch2Shadow &= 0xff;
             this.su_ch2 = su_ch2Shadow;
-            this.su_tPos = this.data.tt[this.su_tPos];
             this.su_i2++;
             this.currentChar = su_ch2Shadow;
             this.currentState = NO_RAND_PART_B_STATE;
@@ -880,6 +1029,10 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         } else {
             this.currentState = NO_RAND_PART_A_STATE;
             endBlock();
+            if (this.singleBlock) {
+                this.currentState = EOF;
+                return;
+            }
             initBlock();
             setupBlock();
         }
@@ -891,8 +1044,9 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
             this.su_count = 1;
             setupRandPartA();
         } else if (++this.su_count >= 4) {
-            this.su_z = (char) (this.data.ll8[this.su_tPos] & 0xff);
-            this.su_tPos = this.data.tt[this.su_tPos];
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            this.su_z = (char) (tt_tPos & 0xff);
+            this.su_tPos = tt_tPos >>> 8;
             if (this.su_rNToGo == 0) {
                 this.su_rNToGo = Rand.rNums(this.su_rTPos) - 1;
                 if (++this.su_rTPos == 512) {
@@ -931,8 +1085,9 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
             this.su_count = 1;
             setupNoRandPartA();
         } else if (++this.su_count >= 4) {
-            this.su_z = (char) (this.data.ll8[this.su_tPos] & 0xff);
-            this.su_tPos = this.data.tt[this.su_tPos];
+            final int tt_tPos = this.data.tt[this.su_tPos];
+            this.su_z = (char) (tt_tPos & 0xff);
+            this.su_tPos = tt_tPos >>> 8;
             this.su_j2 = 0;
             setupNoRandPartC();
         } else {
@@ -973,20 +1128,21 @@ public class BZip2CompressorInputStream extends CompressorInputStream implements
         final int[][] base = new int[N_GROUPS][MAX_ALPHA_SIZE]; // 6192 byte
         final int[][] perm = new int[N_GROUPS][MAX_ALPHA_SIZE]; // 6192 byte
         final int[] minLens = new int[N_GROUPS]; // 24 byte
+        final int[][] lookup = new int[N_GROUPS][1 << LOOKUP_BITS]; // 24576 byte
 
         final int[] cftab = new int[257]; // 1028 byte
-        final char[] getAndMoveToFrontDecode_yy = new char[256]; // 512 byte
+        final byte[] getAndMoveToFrontDecode_yy = new byte[256]; // 256 byte
         final char[][] temp_charArray2d = new char[N_GROUPS][MAX_ALPHA_SIZE]; // 3096
         // byte
         final byte[] recvDecodingTables_pos = new byte[N_GROUPS]; // 6 byte
         // ---------------
-        // 60798 byte
+        // 84766 byte
 
         int[] tt; // 3600000 byte
         byte[] ll8; // 900000 byte
 
         // ---------------
-        // 4560782 byte
+        // 4584750 byte
         // ===============
 
         Data(int blockSize100k) {
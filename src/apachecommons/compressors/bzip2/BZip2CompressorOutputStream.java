@@ -19,8 +19,16 @@
 package apachecommons.compressors.bzip2;
 
 import apachecommons.compressors.CompressorOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * An output stream that compresses into the BZip2 format into another stream.
@@ -119,6 +127,15 @@ import java.io.OutputStream;
  * </p>
  *
  * <p>
+ * When created with more than one thread, full blocks are sorted and
+ * Huffman-coded on a pool of worker threads, as in pbzip2. Each worker
+ * encodes its block into a separate bit buffer and the buffers are appended
+ * to the stream in their original order. Block CRCs, and thus the combined
+ * stream CRC, are computed on the calling thread as data is written, so the
+ * output is identical to that of the single-threaded stream.
+ * </p>
+ *
+ * <p>
  * TODO: Update to BZip2 1.0.1
  * </p>
  * @NotThreadSafe
@@ -321,9 +338,29 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
      */
     private Data data;
     private BlockSort blockSorter;
+    private final boolean suffixArraySort;
 
     private OutputStream out;
 
+    /**
+     * Parallel compression: each block is encoded by a separate instance of
+     * this class (holding its own Data and BlockSort). Encoders with blocks
+     * in progress wait in pending, in order of the blocks.
+     */
+    private final ExecutorService executor;
+    private final int maxencoders;
+    private final ArrayDeque<Future<BZip2CompressorOutputStream>> pending =
+        new ArrayDeque<Future<BZip2CompressorOutputStream>>();
+    private final ArrayDeque<BZip2CompressorOutputStream> idle =
+        new ArrayDeque<BZip2CompressorOutputStream>();
+    private int numencoders = 0;
+
+    /**
+     * Output of an encoder: the bits of one block, padded to full bytes.
+     */
+    private ByteArrayOutputStream encoded;
+    private int encodedBits;
+
     /**
      * Chooses a blocksize based on the given length of the data to compress.
      *
@@ -378,6 +415,63 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
     public BZip2CompressorOutputStream(final OutputStream out,
                                        final int blockSize)
         throws IOException {
+        this(out, blockSize, 1);
+    }
+
+    /**
+     * Constructs a new <tt>BZip2CompressorOutputStream</tt> with specified
+     * blocksize, compressing several blocks at once.
+     *
+     * @param out
+     *            the destination stream.
+     * @param blockSize
+     *            the blockSize as 100k units.
+     * @param numThreads
+     *            number of threads used for compression. With 1, blocks are
+     *            compressed on the calling thread.
+     *
+     * @throws IOException
+     *             if an I/O error occurs in the specified stream.
+     * @throws IllegalArgumentException
+     *             if <code>(blockSize < 1) || (blockSize > 9)</code>.
+     * @throws NullPointerException
+     *             if <code>out == null</code>.
+     */
+    public BZip2CompressorOutputStream(final OutputStream out,
+                                       final int blockSize,
+                                       final int numThreads)
+        throws IOException {
+        this(out, blockSize, numThreads, false);
+    }
+
+    /**
+     * Constructs a new <tt>BZip2CompressorOutputStream</tt> with specified
+     * blocksize, number of threads, and block sorting algorithm.
+     *
+     * @param out
+     *            the destination stream.
+     * @param blockSize
+     *            the blockSize as 100k units.
+     * @param numThreads
+     *            number of threads used for compression. With 1, blocks are
+     *            compressed on the calling thread.
+     * @param suffixArraySort
+     *            if true, blocks are sorted by suffix array construction
+     *            (see SuffixArrayBlockSort), which is faster on repetitive
+     *            data. Otherwise the classic bzip2 sort is used.
+     *
+     * @throws IOException
+     *             if an I/O error occurs in the specified stream.
+     * @throws IllegalArgumentException
+     *             if <code>(blockSize < 1) || (blockSize > 9)</code>.
+     * @throws NullPointerException
+     *             if <code>out == null</code>.
+     */
+    public BZip2CompressorOutputStream(final OutputStream out,
+                                       final int blockSize,
+                                       final int numThreads,
+                                       final boolean suffixArraySort)
+        throws IOException {
         super();
 
         if (blockSize < 1) {
@@ -391,12 +485,49 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
 
         this.blockSize100k = blockSize;
         this.out = out;
+        this.suffixArraySort = suffixArraySort;
 
         /* 20 is just a paranoia constant */
         this.allowableBlockSize = (this.blockSize100k * BZip2Constants.BASEBLOCKSIZE) - 20;
+        if (numThreads > 1) {
+            this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "bzip2-compressor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            // one block being filled, one per thread, and some finished blocks
+            this.maxencoders = numThreads * 2 + 1;
+        } else {
+            this.executor = null;
+            this.maxencoders = 0;
+        }
         init();
     }
 
+    /**
+     * Constructs an encoder for single blocks, used by parallel compression.
+     * It writes no stream header and holds no destination stream, so
+     * finish() does nothing.
+     */
+    private BZip2CompressorOutputStream(final int blockSize,
+                                        final boolean suffixArraySort) {
+        super();
+        this.blockSize100k = blockSize;
+        this.suffixArraySort = suffixArraySort;
+        this.allowableBlockSize = (this.blockSize100k * BZip2Constants.BASEBLOCKSIZE) - 20;
+        this.executor = null;
+        this.maxencoders = 0;
+        this.data = new Data(blockSize);
+        this.blockSorter = makeBlockSort(this.data);
+    }
+
+    private BlockSort makeBlockSort(Data blockData) {
+        return this.suffixArraySort ? new SuffixArrayBlockSort(blockData) : new BlockSort(blockData);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void write(final int b) throws IOException {
@@ -492,11 +623,19 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
                 }
                 this.currentChar = -1;
                 endBlock();
+                while (!this.pending.isEmpty()) {
+                    writePending();
+                }
                 endCompression();
             } finally {
                 this.out = null;
                 this.data = null;
                 this.blockSorter = null;
+                if (this.executor != null) {
+                    this.executor.shutdownNow();
+                    this.pending.clear();
+                    this.idle.clear();
+                }
             }
         }
     }
@@ -528,8 +667,12 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
         bsPutUByte('B');
         bsPutUByte('Z');
 
-        this.data = new Data(this.blockSize100k);
-        this.blockSorter = new BlockSort(this.data);
+        if (this.executor != null) {
+            nextEncoder();
+        } else {
+            this.data = new Data(this.blockSize100k);
+            this.blockSorter = makeBlockSort(this.data);
+        }
 
         // huffmanised magic bytes
         bsPutUByte('h');
@@ -562,6 +705,17 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
             return;
         }
 
+        if (this.executor != null) {
+            submitBlock();
+        } else {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Sorts the block and writes it with its header.
+     */
+    private void writeBlock() throws IOException {
         /* sort the block and establish posn of original string */
         blockSort();
 
@@ -593,6 +747,87 @@ public class BZip2CompressorOutputStream extends CompressorOutputStream
         moveToFrontCodeAndSend();
     }
 
+    /**
+     * Hands the block that was just filled to a worker thread and switches
+     * to the data of another encoder.
+     */
+    private void submitBlock() throws IOException {
+        final BZip2CompressorOutputStream encoder = this.idle.poll();
+        encoder.last = this.last;
+        encoder.blockCRC = this.blockCRC;
+        this.pending.add(this.executor.submit(new Callable<BZip2CompressorOutputStream>() {
+            @Override
+            public BZip2CompressorOutputStream call() throws IOException {
+                encoder.encodeBlock();
+                return encoder;
+            }
+        }));
+        nextEncoder();
+    }
+
+    /**
+     * Makes the data of an unused encoder the current block, creating an
+     * encoder or waiting for the oldest block if needed. The current encoder
+     * is kept at the head of idle.
+     */
+    private void nextEncoder() throws IOException {
+        if (this.idle.isEmpty()) {
+            if (this.numencoders < this.maxencoders) {
+                this.idle.add(new BZip2CompressorOutputStream(this.blockSize100k, this.suffixArraySort));
+                this.numencoders++;
+            } else {
+                writePending();
+            }
+        }
+        this.data = this.idle.peek().data;
+    }
+
+    /**
+     * Encodes a block into a bit buffer (runs on a worker thread).
+     */
+    private void encodeBlock() throws IOException {
+        if (this.encoded == null) {
+            this.encoded = new ByteArrayOutputStream(this.blockSize100k * BZip2Constants.BASEBLOCKSIZE / 4);
+        }
+        this.encoded.reset();
+        this.out = this.encoded;
+        this.bsBuff = 0;
+        this.bsLive = 0;
+        try {
+            writeBlock();
+            this.encodedBits = this.encoded.size() * 8 + this.bsLive;
+            bsFinishedWithStream();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    /**
+     * Waits for the oldest block in progress and appends its bits to the
+     * stream.
+     */
+    private void writePending() throws IOException {
+        final BZip2CompressorOutputStream encoder;
+        try {
+            encoder = this.pending.poll().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Error compressing block: " + ex.getCause().getMessage(), ex.getCause());
+        }
+        final byte[] bits = encoder.encoded.toByteArray();
+        final int nbytes = encoder.encodedBits >>> 3;
+        for (int i = 0; i < nbytes; i++) {
+            bsW(8, bits[i] & 0xff);
+        }
+        final int rest = encoder.encodedBits & 7;
+        if (rest > 0) {
+            bsW(rest, (bits[nbytes] & 0xff) >>> (8 - rest));
+        }
+        this.idle.add(encoder);
+    }
+
     private void endCompression() throws IOException {
         /*
          * Now another magic 48-bit number, 0x177245385090, to indicate the end
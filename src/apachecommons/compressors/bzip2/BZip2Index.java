@@ -0,0 +1,246 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.bzip2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Index of the blocks in a bzip2 file.
+ *
+ * For each block, the index holds the position of the block in the
+ * compressed file (in bits, as blocks are not aligned to bytes) and the
+ * offset of its first byte in the uncompressed data. Blocks in all
+ * concatenated streams of a file are included.
+ *
+ * The index is stored next to the bzip2 file, with extension .bzi. The
+ * format is a little-endian uint64 with the number of blocks, followed by a
+ * pair of uint64 (bit offset, uncompressed offset) for each block, and a
+ * final uint64 with the total uncompressed size.
+ *
+ * @author Tomasz Konopka
+ */
+public class BZip2Index {
+
+    private long[] bitoffsets;
+    private long[] uoffsets;
+    private int size;
+    private long totalsize;
+
+    BZip2Index() {
+        bitoffsets = new long[1024];
+        uoffsets = new long[1024];
+        size = 0;
+        totalsize = 0;
+    }
+
+    /**
+     * records a block (blocks must be added in order)
+     *
+     * @param bitoffset
+     * @param uoffset
+     */
+    void add(long bitoffset, long uoffset) {
+        if (size == bitoffsets.length) {
+            bitoffsets = Arrays.copyOf(bitoffsets, size * 2);
+            uoffsets = Arrays.copyOf(uoffsets, size * 2);
+        }
+        bitoffsets[size] = bitoffset;
+        uoffsets[size] = uoffset;
+        size++;
+    }
+
+    void setTotalSize(long totalsize) {
+        this.totalsize = totalsize;
+    }
+
+    /**
+     *
+     * @param bzifile
+     * @return
+     *
+     * an index read from a .bzi file
+     *
+     * @throws IOException
+     */
+    public static BZip2Index read(File bzifile) throws IOException {
+        BZip2Index index = new BZip2Index();
+        InputStream is = new BufferedInputStream(new FileInputStream(bzifile));
+        try {
+            byte[] b = new byte[16];
+            readFully(is, b, 8);
+            long numentries = getLong(b, 0);
+            for (long i = 0; i < numentries; i++) {
+                readFully(is, b, 16);
+                index.add(getLong(b, 0), getLong(b, 8));
+            }
+            readFully(is, b, 8);
+            index.setTotalSize(getLong(b, 0));
+        } finally {
+            is.close();
+        }
+        return index;
+    }
+
+    /**
+     * creates an index by decompressing a bzip2 file.
+     *
+     * @param bz2file
+     * @param numthreads
+     *
+     * number of threads used for decompression
+     *
+     * @return
+     * @throws IOException
+     */
+    public static BZip2Index build(File bz2file, int numthreads) throws IOException {
+        BZip2Index index = new BZip2Index();
+        ParallelBZip2CompressorInputStream bzis = new ParallelBZip2CompressorInputStream(new FileInputStream(bz2file), numthreads);
+        try {
+            bzis.setIndex(index);
+            byte[] b = new byte[1 << 16];
+            long total = 0;
+            int nowread;
+            while ((nowread = bzis.read(b, 0, b.length)) > 0) {
+                total += nowread;
+            }
+            index.setTotalSize(total);
+        } finally {
+            bzis.close();
+        }
+        return index;
+    }
+
+    /**
+     * writes the index in the .bzi format
+     *
+     * @param bzifile
+     * @throws IOException
+     */
+    public void write(File bzifile) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(bzifile));
+        try {
+            byte[] b = new byte[16];
+            putLong(b, 0, size);
+            os.write(b, 0, 8);
+            for (int i = 0; i < size; i++) {
+                putLong(b, 0, bitoffsets[i]);
+                putLong(b, 8, uoffsets[i]);
+                os.write(b, 0, 16);
+            }
+            putLong(b, 0, totalsize);
+            os.write(b, 0, 8);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     *
+     * @param bz2file
+     * @return
+     *
+     * the file holding the index for a bzip2 file
+     */
+    public static File getIndexFile(File bz2file) {
+        return new File(bz2file.getAbsolutePath() + ".bzi");
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of blocks in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getBitOffset(int i) {
+        return bitoffsets[i];
+    }
+
+    public long getUncompressedOffset(int i) {
+        return uoffsets[i];
+    }
+
+    /**
+     *
+     * @return
+     *
+     * total size of the uncompressed data
+     */
+    public long getTotalSize() {
+        return totalsize;
+    }
+
+    /**
+     *
+     * @param uoffset
+     *
+     * offset in the uncompressed data
+     *
+     * @return
+     *
+     * index of the last block that starts at or before the offset, or -1 if
+     * the index is empty
+     */
+    public int findBlock(long uoffset) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (uoffsets[mid] <= uoffset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi < 0 ? -1 : lo;
+    }
+
+    private static void readFully(InputStream is, byte[] b, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int nowread = is.read(b, total, len - total);
+            if (nowread < 0) {
+                throw new EOFException("Truncated .bzi file");
+            }
+            total += nowread;
+        }
+    }
+
+    private static long getLong(byte[] b, int offset) {
+        long ans = 0;
+        for (int i = 7; i >= 0; i--) {
+            ans = (ans << 8) | (b[offset + i] & 0xff);
+        }
+        return ans;
+    }
+
+    private static void putLong(byte[] b, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            b[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
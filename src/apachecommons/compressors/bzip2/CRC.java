@@ -119,6 +119,15 @@ class CRC {
             globalCrc = (globalCrc << 8) ^ CRC.crc32Table[temp];
         }
 
+        /**
+         * Updates a CRC value held by the caller (for use in loops that keep
+         * the CRC in a local variable).
+         */
+        static int updateCRC(int globalCrcShadow, byte inCh) {
+            return (globalCrcShadow << 8)
+                ^ crc32Table[((globalCrcShadow >> 24) ^ inCh) & 0xff];
+        }
+
         void updateCRC(int inCh, int repeat) {
             int globalCrcShadow = this.globalCrc;
             while (repeat-- > 0) {
@@ -0,0 +1,525 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.bzip2;
+
+import apachecommons.compressors.CompressorInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Input stream reading bzip2 data using several threads.
+ *
+ * bzip2 blocks start with a 48-bit magic number and are not aligned to
+ * bytes. The compressed data is scanned on the calling thread for this
+ * magic number (and for the end-of-stream magic number). The bits between
+ * consecutive magic numbers are handed to worker threads, which decode them
+ * as single blocks and check the block CRCs. The calling thread returns the
+ * decoded blocks in order, checks that each block ends where the next one
+ * starts, and verifies the combined CRC of each stream.
+ *
+ * The magic number can occur by chance inside compressed data. Such false
+ * block starts are recognized because a decoded block ends past them; a
+ * real block cut short by a false start is decoded again on the calling
+ * thread. Concatenated streams (e.g. from pbzip2) are read to the end.
+ *
+ * @author Tomasz Konopka
+ */
+public class ParallelBZip2CompressorInputStream extends CompressorInputStream {
+
+    private static final long BLOCKMAGIC = 0x314159265359L;
+    private static final long EOSMAGIC = 0x177245385090L;
+    private static final long MAGICMASK = (1L << 48) - 1;
+    private static final int READSIZE = 1 << 16;
+    // compressed blocks are never larger than this
+    static final int MAXBLOCKBYTES = 1 << 21;
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int maxpending;
+    // compressed data: buf holds bytes starting at absolute offset bufstart
+    private byte[] buf = new byte[1 << 20];
+    private long bufstart = 0;
+    private int buflen = 0;
+    private boolean inputEnd = false;
+    // scanning for magic numbers: number of bytes scanned and the last bits
+    private long scanned = 0;
+    private long scanbits = 0;
+    // magic numbers found and not yet consumed, in order
+    private final ArrayDeque<Candidate> candidates = new ArrayDeque<Candidate>();
+    private Candidate lastCandidate = null;
+    // decoding state: bit position of the next block or stream header
+    private long position = 0;
+    private boolean atStreamStart = true;
+    private int computedCombinedCRC = 0;
+    // decoded data of the current block
+    private byte[] block = new byte[0];
+    private int blocklen = 0;
+    private int blockpos = 0;
+    private boolean endReached = false;
+    // optional index that records the positions of blocks
+    private BZip2Index index = null;
+    private long uncompressed = 0;
+
+    /**
+     * a position where a magic number was found
+     */
+    private static final class Candidate {
+
+        final long bit;
+        final boolean eos;
+        Future<Block> future = null;
+
+        Candidate(long bit, boolean eos) {
+            this.bit = bit;
+            this.eos = eos;
+        }
+    }
+
+    /**
+     * a decoded block
+     */
+    static final class Block {
+
+        byte[] data;
+        int length;
+        int crc;
+        long endbit;
+    }
+
+    /**
+     *
+     * @param inputStream
+     *
+     * stream with bzip2 data (one or more concatenated streams)
+     *
+     * @param numthreads
+     *
+     * number of threads used for decompression
+     *
+     * @throws IOException
+     *
+     * if the stream does not start with a bzip2 header
+     */
+    public ParallelBZip2CompressorInputStream(InputStream inputStream, int numthreads) throws IOException {
+        in = inputStream;
+        numthreads = Math.max(1, numthreads);
+        executor = Executors.newFixedThreadPool(numthreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "bzip2-decompressor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        maxpending = numthreads * 2;
+        try {
+            readStreamHeader(true);
+        } catch (IOException ex) {
+            executor.shutdownNow();
+            throw ex;
+        }
+    }
+
+    /**
+     * reads more compressed data into the buffer, dropping data that is no
+     * longer needed.
+     *
+     * @return
+     *
+     * false if the input has ended
+     */
+    private boolean readMore() throws IOException {
+        if (inputEnd) {
+            return false;
+        }
+        // keep data from the current position and all unscanned data
+        long keep = Math.min(position >>> 3, scanned);
+        int drop = (int) Math.max(0, keep - bufstart);
+        if (drop > 0) {
+            System.arraycopy(buf, drop, buf, 0, buflen - drop);
+            buflen -= drop;
+            bufstart += drop;
+        }
+        if (buf.length - buflen < READSIZE) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int nowread = in.read(buf, buflen, READSIZE);
+        if (nowread < 0) {
+            inputEnd = true;
+            // a block at the end of the input has no following magic number
+            if (lastCandidate != null && !lastCandidate.eos && lastCandidate.future == null) {
+                submit(lastCandidate, (bufstart + buflen) << 3);
+            }
+            return false;
+        }
+        buflen += nowread;
+        return true;
+    }
+
+    /**
+     * makes sure that bytes up to an absolute offset are in the buffer
+     *
+     * @return
+     *
+     * false if the input ends before that offset
+     */
+    private boolean ensureAvailable(long end) throws IOException {
+        while (bufstart + buflen < end) {
+            if (!readMore()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * scans some of the compressed data for magic numbers
+     *
+     * @return
+     *
+     * false if all the input has been scanned
+     */
+    private boolean scanMore() throws IOException {
+        if (scanned == bufstart + buflen && !readMore()) {
+            return false;
+        }
+        long bits = scanbits;
+        long end = bufstart + buflen;
+        for (long i = scanned; i < end; i++) {
+            bits = (bits << 8) | (buf[(int) (i - bufstart)] & 0xff);
+            // check all alignments of the magic numbers ending in this byte
+            for (int s = 7; s >= 0; s--) {
+                long value = (bits >>> s) & MAGICMASK;
+                if (value == BLOCKMAGIC || value == EOSMAGIC) {
+                    long bit = ((i + 1) << 3) - s - 48;
+                    if (bit >= 0) {
+                        addCandidate(new Candidate(bit, value == EOSMAGIC));
+                    }
+                }
+            }
+        }
+        scanbits = bits;
+        scanned = end;
+        return true;
+    }
+
+    private void addCandidate(Candidate c) {
+        if (lastCandidate != null && !lastCandidate.eos) {
+            submit(lastCandidate, c.bit);
+        }
+        candidates.add(c);
+        lastCandidate = c;
+    }
+
+    /**
+     * sends the compressed bits of a block to a worker thread
+     *
+     * @param c
+     * @param endbit
+     *
+     * position of the next magic number, or the end of the input
+     */
+    private void submit(Candidate c, long endbit) {
+        final long from = c.bit >>> 3;
+        if (from < bufstart) {
+            // data already dropped; the candidate was inside an earlier block
+            return;
+        }
+        final int skip = (int) (c.bit & 7);
+        final byte[] slice = Arrays.copyOfRange(buf, (int) (from - bufstart), (int) (((endbit + 7) >>> 3) - bufstart));
+        c.future = executor.submit(new Callable<Block>() {
+            @Override
+            public Block call() throws IOException {
+                return decodeBlock(slice, slice.length, from, skip);
+            }
+        });
+    }
+
+    /**
+     * decodes a single block
+     *
+     * @param data
+     * @param len
+     * @param from
+     *
+     * absolute offset of the first byte of data
+     *
+     * @param skip
+     *
+     * number of bits before the block magic in the first byte
+     *
+     * @return
+     *
+     * @throws IOException
+     *
+     * if the block is malformed or its CRC is wrong
+     */
+    static Block decodeBlock(byte[] data, int len, long from, int skip) throws IOException {
+        ByteArrayInputStream bis = new ByteArrayInputStream(data, 0, len);
+        BZip2CompressorInputStream decoder = new BZip2CompressorInputStream(bis, BZip2CompressorOutputStream.MAX_BLOCKSIZE, skip);
+        Block ans = new Block();
+        ans.endbit = ((from + len - bis.available()) << 3) - decoder.getUnusedBits();
+        ans.crc = decoder.getStoredBlockCRC();
+        byte[] out = new byte[1 << 20];
+        int outlen = 0;
+        while (true) {
+            if (outlen == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            int nowread = decoder.read(out, outlen, out.length - outlen);
+            if (nowread < 0) {
+                break;
+            }
+            outlen += nowread;
+        }
+        ans.data = out;
+        ans.length = outlen;
+        return ans;
+    }
+
+    /**
+     * scans ahead until enough blocks are being decoded
+     */
+    private void fillPending() throws IOException {
+        while (candidates.size() < maxpending && scanMore()) {
+            // keep scanning
+        }
+    }
+
+    /**
+     * finds the magic number at the current position, discarding magic
+     * numbers that were found inside earlier blocks
+     *
+     * @return
+     *
+     * the candidate at the current position, or null if there is none
+     */
+    private Candidate nextCandidate() throws IOException {
+        while (true) {
+            while (!candidates.isEmpty() && candidates.peek().bit < position) {
+                Candidate c = candidates.poll();
+                if (c.future != null) {
+                    c.future.cancel(true);
+                }
+            }
+            if (!candidates.isEmpty()) {
+                return candidates.peek().bit == position ? candidates.peek() : null;
+            }
+            if (!scanMore()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * reads the 4-byte header of a stream at the current position
+     *
+     * @return
+     *
+     * false if the input has ended
+     */
+    private boolean readStreamHeader(boolean isFirstStream) throws IOException {
+        long offset = position >>> 3;
+        ensureAvailable(offset + 4);
+        long available = bufstart + buflen - offset;
+        if (available <= 0 && !isFirstStream) {
+            return false;
+        }
+        int i = (int) (offset - bufstart);
+        if (available < 4 || buf[i] != 'B' || buf[i + 1] != 'Z' || buf[i + 2] != 'h'
+                || buf[i + 3] < '1' || buf[i + 3] > '9') {
+            throw new IOException(isFirstStream
+                    ? "Stream is not in the BZip2 format"
+                    : "Garbage after a valid BZip2 stream");
+        }
+        position = (offset + 4) << 3;
+        atStreamStart = false;
+        computedCombinedCRC = 0;
+        return true;
+    }
+
+    /**
+     * reads bits from the buffer (the bytes must be available)
+     */
+    private int getBits(long bit, int n) {
+        int ans = 0;
+        for (int k = 0; k < n; k++, bit++) {
+            int b = buf[(int) ((bit >>> 3) - bufstart)] & 0xff;
+            ans = (ans << 1) | ((b >>> (7 - (int) (bit & 7))) & 1);
+        }
+        return ans;
+    }
+
+    /**
+     * waits for a block to be decoded, decoding it again on this thread if
+     * the bits given to the worker were cut short by a false magic number
+     */
+    private Block getBlock(Candidate c) throws IOException {
+        while (c.future == null && scanMore()) {
+            // the end of the block has not been scanned yet
+        }
+        try {
+            return c.future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing", ex);
+        } catch (ExecutionException ex) {
+            long from = c.bit >>> 3;
+            ensureAvailable(from + MAXBLOCKBYTES);
+            try {
+                int start = (int) (from - bufstart);
+                byte[] data = Arrays.copyOfRange(buf, start, buflen);
+                return decodeBlock(data, data.length, from, (int) (c.bit & 7));
+            } catch (IOException ex2) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Error decompressing block", cause);
+            }
+        }
+    }
+
+    /**
+     * moves to the next block with data
+     *
+     * @return
+     *
+     * false at the end of the input
+     */
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            if (atStreamStart) {
+                if (!readStreamHeader(false)) {
+                    return false;
+                }
+            }
+            Candidate c = nextCandidate();
+            if (c == null) {
+                throw new IOException(inputEnd && candidates.isEmpty()
+                        ? "unexpected end of stream" : "bad block header");
+            }
+            if (c.eos) {
+                if (!ensureAvailable((position + 80 + 7) >>> 3)) {
+                    throw new IOException("unexpected end of stream");
+                }
+                int storedCombinedCRC = getBits(position + 48, 32);
+                if (storedCombinedCRC != computedCombinedCRC) {
+                    throw new IOException("BZip2 CRC error");
+                }
+                candidates.poll();
+                // the next stream starts at a byte boundary
+                position = ((position + 80 + 7) >>> 3) << 3;
+                atStreamStart = true;
+                continue;
+            }
+
+            Block b = getBlock(c);
+            candidates.poll();
+            if (index != null) {
+                index.add(c.bit, uncompressed);
+            }
+            uncompressed += b.length;
+            computedCombinedCRC = (computedCombinedCRC << 1) | (computedCombinedCRC >>> 31);
+            computedCombinedCRC ^= b.crc;
+            position = b.endbit;
+            fillPending();
+            if (b.length > 0) {
+                block = b.data;
+                blocklen = b.length;
+                blockpos = 0;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * sets an index that will record each block as it is decoded
+     *
+     * @param index
+     */
+    void setIndex(BZip2Index index) {
+        this.index = index;
+    }
+
+    private boolean ensureData() throws IOException {
+        if (blockpos < blocklen) {
+            return true;
+        }
+        if (endReached || !nextBlock()) {
+            endReached = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        count(1);
+        int ans = block[blockpos] & 0xff;
+        blockpos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int size = 0;
+        while (len > 0 && ensureData()) {
+            int nowlen = Math.min(len, blocklen - blockpos);
+            System.arraycopy(block, blockpos, b, off, nowlen);
+            blockpos += nowlen;
+            off += nowlen;
+            len -= nowlen;
+            size += nowlen;
+        }
+        count(size);
+        return size == 0 ? -1 : size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return blocklen - blockpos;
+    }
+
+    /**
+     * Closes the input stream (unless it is System.in) and stops the worker
+     * threads.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        candidates.clear();
+        if (in != System.in) {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.bzip2;
+
+import apachecommons.compressors.CompressorInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Input stream reading a bzip2 file with the help of a block index, allowing
+ * jumps to any offset in the uncompressed data.
+ *
+ * Blocks are located through the index, so a seek only decodes the block
+ * that contains the requested offset. Reading then continues block by block
+ * until the end of the file.
+ *
+ * @author Tomasz Konopka
+ */
+public class SeekableBZip2CompressorInputStream extends CompressorInputStream {
+
+    private final RandomAccessFile raf;
+    private final long filesize;
+    private final BZip2Index index;
+    // the current block and its uncompressed data
+    private int blocknum = -1;
+    private long blockoffset = 0;
+    private byte[] block = new byte[0];
+    private int blocklen = 0;
+    private int blockpos = 0;
+
+    /**
+     *
+     * @param f
+     *
+     * bzip2 file
+     *
+     * @param index
+     *
+     * index of the blocks in the file (see BZip2Index.build)
+     *
+     * @throws IOException
+     */
+    public SeekableBZip2CompressorInputStream(File f, BZip2Index index) throws IOException {
+        this.raf = new RandomAccessFile(f, "r");
+        this.filesize = raf.length();
+        this.index = index;
+    }
+
+    public BZip2Index getIndex() {
+        return index;
+    }
+
+    /**
+     * reads and decodes a block listed in the index
+     *
+     * @param i
+     */
+    private void loadBlock(int i) throws IOException {
+        long from = index.getBitOffset(i) >>> 3;
+        long to;
+        if (i + 1 < index.size()) {
+            to = (index.getBitOffset(i + 1) >>> 3) + 1;
+        } else {
+            to = from + ParallelBZip2CompressorInputStream.MAXBLOCKBYTES;
+        }
+        to = Math.min(to, filesize);
+        if (from >= to) {
+            throw new IOException("bzip2 index does not match file");
+        }
+        byte[] data = new byte[(int) (to - from)];
+        raf.seek(from);
+        raf.readFully(data);
+        ParallelBZip2CompressorInputStream.Block b = ParallelBZip2CompressorInputStream.decodeBlock(data, data.length, from, (int) (index.getBitOffset(i) & 7));
+
+        long expected = (i + 1 < index.size() ? index.getUncompressedOffset(i + 1) : index.getTotalSize())
+                - index.getUncompressedOffset(i);
+        if (b.length != expected) {
+            throw new IOException("bzip2 index does not match file");
+        }
+        blocknum = i;
+        blockoffset = index.getUncompressedOffset(i);
+        block = b.data;
+        blocklen = b.length;
+        blockpos = 0;
+    }
+
+    /**
+     * makes sure there is data available in the current block, moving to the
+     * next non-empty block if needed.
+     *
+     * @return
+     *
+     * false at the end of the data
+     */
+    private boolean ensureData() throws IOException {
+        while (blockpos == blocklen) {
+            if (blocknum + 1 >= index.size()) {
+                return false;
+            }
+            loadBlock(blocknum + 1);
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        count(1);
+        int ans = block[blockpos] & 0xff;
+        blockpos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int size = 0;
+        while (len > 0 && ensureData()) {
+            int nowlen = Math.min(len, blocklen - blockpos);
+            System.arraycopy(block, blockpos, b, off, nowlen);
+            blockpos += nowlen;
+            off += nowlen;
+            len -= nowlen;
+            size += nowlen;
+        }
+        count(size);
+        return size == 0 ? -1 : size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return blocklen - blockpos;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * offset of the next byte to be read in the uncompressed data
+     */
+    public long tell() {
+        return blockoffset + blockpos;
+    }
+
+    /**
+     * moves the stream to a position in the uncompressed data. Only the block
+     * containing the position is decoded.
+     *
+     * @param offset
+     *
+     * offset in the uncompressed data
+     *
+     * @throws IOException
+     */
+    public void seekUncompressed(long offset) throws IOException {
+        if (offset < 0 || offset > index.getTotalSize()) {
+            throw new IOException("Offset beyond end of data: " + offset);
+        }
+        if (offset == index.getTotalSize()) {
+            // position after the last block
+            blocknum = index.size();
+            blockoffset = offset;
+            block = new byte[0];
+            blocklen = 0;
+            blockpos = 0;
+            return;
+        }
+        int i = index.findBlock(offset);
+        if (i != blocknum) {
+            loadBlock(i);
+        }
+        blockpos = (int) (offset - index.getUncompressedOffset(i));
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
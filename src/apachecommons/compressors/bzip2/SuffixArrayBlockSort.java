@@ -0,0 +1,255 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.bzip2;
+
+import java.util.Arrays;
+
+/**
+ * Burrows-Wheeler sorting based on suffix array construction by induced
+ * sorting (SA-IS, Nong, Zhang and Chan 2009).
+ *
+ * bzip2 sorts the rotations of a block. The rotations of a block T are
+ * ordered as the suffixes of TT that start in the first copy of T, so the
+ * suffix array of TT gives the sorted rotations. SA-IS runs in linear time
+ * regardless of the content of the block, whereas the classic sort slows
+ * down on long repeats and falls back to a slower algorithm.
+ *
+ * Identical rotations only occur in periodic blocks. The order of such
+ * rotations affects the output (through the position of the original
+ * rotation), and the classic sort places them in an order that is not easy
+ * to reproduce. Periodic blocks are therefore passed to the classic sort, so
+ * the output is always identical to that of the classic sort.
+ *
+ * @NotThreadSafe
+ * @author Tomasz Konopka
+ */
+class SuffixArrayBlockSort extends BlockSort {
+
+    // doubled block and its suffix array, kept between blocks
+    private int[] text = new int[0];
+    private int[] sa = new int[0];
+
+    SuffixArrayBlockSort(final BZip2CompressorOutputStream.Data data) {
+        super(data);
+    }
+
+    @Override
+    void blockSort(final BZip2CompressorOutputStream.Data data, final int last) {
+        final byte[] block = data.block;
+        final int[] fmap = data.fmap;
+        final int n = last + 1;
+        if (text.length < 2 * n) {
+            text = new int[2 * n];
+            sa = new int[2 * n];
+        }
+        if (isPeriodic(block, n, sa)) {
+            super.blockSort(data, last);
+            return;
+        }
+        // the block holds data starting at index 1
+        for (int i = 0; i < n; i++) {
+            int c = block[i + 1] & 0xff;
+            text[i] = c;
+            text[i + n] = c;
+        }
+        block[0] = block[n];
+        sais(text, 2 * n, 256, sa);
+
+        data.origPtr = -1;
+        for (int i = 0, j = 0; i < 2 * n; i++) {
+            int pos = sa[i];
+            if (pos < n) {
+                if (pos == 0) {
+                    data.origPtr = j;
+                }
+                fmap[j] = pos;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * checks if a block consists of several copies of a shorter string
+     * (using the prefix function of the Knuth-Morris-Pratt algorithm)
+     *
+     * @param block
+     *
+     * data, starting at index 1
+     *
+     * @param n
+     *
+     * size of the block
+     *
+     * @param work
+     *
+     * array of at least n elements
+     *
+     */
+    private static boolean isPeriodic(byte[] block, int n, int[] work) {
+        work[0] = 0;
+        int k = 0;
+        for (int i = 1; i < n; i++) {
+            while (k > 0 && block[i + 1] != block[k + 1]) {
+                k = work[k - 1];
+            }
+            if (block[i + 1] == block[k + 1]) {
+                k++;
+            }
+            work[i] = k;
+        }
+        int period = n - work[n - 1];
+        return period < n && n % period == 0;
+    }
+
+    private static boolean isLMS(boolean[] stype, int i) {
+        return i > 0 && stype[i] && !stype[i - 1];
+    }
+
+    private static void getBuckets(int[] s, int n, int k, int[] bkt, boolean end) {
+        Arrays.fill(bkt, 0, k, 0);
+        for (int i = 0; i < n; i++) {
+            bkt[s[i]]++;
+        }
+        int sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum += bkt[i];
+            bkt[i] = end ? sum : sum - bkt[i];
+        }
+    }
+
+    private static void induce(int[] s, int n, int k, int[] sa, boolean[] stype, int[] bkt) {
+        // L-type suffixes, left to right; the suffix at n-1 follows the
+        // (virtual) sentinel and comes first in its bucket
+        getBuckets(s, n, k, bkt, false);
+        sa[bkt[s[n - 1]]++] = n - 1;
+        for (int i = 0; i < n; i++) {
+            int j = sa[i] - 1;
+            if (j >= 0 && !stype[j]) {
+                sa[bkt[s[j]]++] = j;
+            }
+        }
+        // S-type suffixes, right to left
+        getBuckets(s, n, k, bkt, true);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = sa[i] - 1;
+            if (j >= 0 && stype[j]) {
+                sa[--bkt[s[j]]] = j;
+            }
+        }
+    }
+
+    /**
+     * computes the suffix array of a string
+     *
+     * @param s
+     *
+     * string, with values between 0 and k-1
+     *
+     * @param n
+     *
+     * length of the string
+     *
+     * @param k
+     *
+     * size of the alphabet
+     *
+     * @param sa
+     *
+     * array of at least n elements for the result
+     */
+    static void sais(int[] s, int n, int k, int[] sa) {
+        // suffix types: S if smaller than the next suffix, L otherwise; the
+        // last suffix is L-type as it is followed by a virtual sentinel
+        boolean[] stype = new boolean[n];
+        for (int i = n - 2; i >= 0; i--) {
+            stype[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && stype[i + 1]);
+        }
+        int[] bkt = new int[k];
+
+        // sort LMS substrings by induction from their bucket ends
+        getBuckets(s, n, k, bkt, true);
+        Arrays.fill(sa, 0, n, -1);
+        for (int i = 1; i < n; i++) {
+            if (isLMS(stype, i)) {
+                sa[--bkt[s[i]]] = i;
+            }
+        }
+        induce(s, n, k, sa, stype, bkt);
+
+        // collect sorted LMS substrings and give equal substrings equal names
+        int n1 = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLMS(stype, sa[i])) {
+                sa[n1++] = sa[i];
+            }
+        }
+        Arrays.fill(sa, n1, n, -1);
+        int name = 0;
+        int prev = -1;
+        for (int i = 0; i < n1; i++) {
+            int pos = sa[i];
+            boolean diff = false;
+            for (int d = 0;; d++) {
+                if (prev < 0 || pos + d == n || prev + d == n
+                        || s[pos + d] != s[prev + d] || stype[pos + d] != stype[prev + d]) {
+                    diff = true;
+                    break;
+                }
+                if (d > 0 && isLMS(stype, pos + d)) {
+                    break;
+                }
+            }
+            if (diff) {
+                name++;
+                prev = pos;
+            }
+            sa[n1 + (pos >> 1)] = name - 1;
+        }
+        int[] s1 = new int[n1];
+        for (int i = n1 + (n >> 1), j = n1 - 1; i >= n1; i--) {
+            if (i < n && sa[i] >= 0) {
+                s1[j--] = sa[i];
+            }
+        }
+
+        // sort LMS suffixes, recursively if their names are not unique
+        int[] sa1 = new int[n1];
+        if (name < n1) {
+            sais(s1, n1, name, sa1);
+        } else {
+            for (int i = 0; i < n1; i++) {
+                sa1[s1[i]] = i;
+            }
+        }
+        for (int i = 1, j = 0; i < n; i++) {
+            if (isLMS(stype, i)) {
+                s1[j++] = i;
+            }
+        }
+        for (int i = 0; i < n1; i++) {
+            sa1[i] = s1[sa1[i]];
+        }
+
+        // induce the full suffix array from the sorted LMS suffixes
+        getBuckets(s, n, k, bkt, true);
+        Arrays.fill(sa, 0, n, -1);
+        for (int i = n1 - 1; i >= 0; i--) {
+            int j = sa1[i];
+            sa[--bkt[s[j]]] = j;
+        }
+        induce(s, n, k, sa, stype, bkt);
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import apachecommons.compressors.CodecPool;
+import apachecommons.compressors.CompressorInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream reading blocked gzip (BGZF) data, one block at a time.
+ *
+ * Positions in the stream are described by virtual offsets, as in samtools:
+ * the upper 48 bits hold the offset of a block in the compressed file and the
+ * lower 16 bits hold an offset within the uncompressed block. When the stream
+ * is created from a file, seek() can jump to any virtual offset obtained from
+ * tell(), or to an uncompressed offset with the help of a BGZFIndex.
+ *
+ * @author Tomasz Konopka
+ */
+public class BGZFCompressorInputStream extends CompressorInputStream {
+
+    // size of a block header up to and including the BC subfield
+    static final int BLOCKHEADERSIZE = 18;
+    // source of compressed data: a file (seekable) or a stream
+    private final RandomAccessFile raf;
+    private final InputStream in;
+    // compressed and uncompressed data of the current block, and the
+    // inflater (all from CodecPool, returned on close)
+    private byte[] cblock = CodecPool.getBuffer(BGZFCompressorOutputStream.MAXBLOCKSIZE);
+    private byte[] block = CodecPool.getBuffer(BGZFCompressorOutputStream.MAXBLOCKSIZE);
+    private int blocklen = 0;
+    private int blockpos = 0;
+    // offsets of the current and the next block in the compressed file
+    private long blockaddress = 0;
+    private long nextaddress = 0;
+    private boolean endReached = false;
+    private Inflater inf = CodecPool.getInflater();
+    private final CRC32 crc = new CRC32();
+    // optional index for seeking to uncompressed offsets
+    private BGZFIndex index = null;
+
+    /**
+     * creates a stream reading from a BGZF file. Such a stream supports
+     * seek().
+     *
+     * @param f
+     * @throws IOException
+     */
+    public BGZFCompressorInputStream(File f) throws IOException {
+        raf = new RandomAccessFile(f, "r");
+        in = null;
+    }
+
+    /**
+     * creates a stream reading BGZF data sequentially. Such a stream does not
+     * support seek().
+     *
+     * @param inputStream
+     * @throws IOException
+     */
+    public BGZFCompressorInputStream(InputStream inputStream) throws IOException {
+        raf = null;
+        in = inputStream;
+    }
+
+    /**
+     * Checks if the bytes start with a BGZF block header, i.e. a gzip header
+     * with an extra field containing the BC subfield.
+     *
+     * @param signature
+     * @param length
+     * @return
+     *
+     * true if the bytes look like the start of a BGZF file
+     */
+    public static boolean matches(byte[] signature, int length) {
+        return length >= BLOCKHEADERSIZE && getBlockSize(signature, 0) > 0;
+    }
+
+    /**
+     *
+     * @param f
+     * @return
+     *
+     * true if the file starts with a BGZF block
+     *
+     * @throws IOException
+     */
+    public static boolean isBGZF(File f) throws IOException {
+        byte[] header = new byte[BLOCKHEADERSIZE];
+        FileInputStream fis = new FileInputStream(f);
+        try {
+            int len = readFully(fis, header, 0, BLOCKHEADERSIZE);
+            return matches(header, len);
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * parses a block header.
+     *
+     * @param b
+     * @param offset
+     *
+     * position of the header in the array (at least BLOCKHEADERSIZE bytes
+     * must be available)
+     *
+     * @return
+     *
+     * total size of the compressed block (header, data, and footer), or -1
+     * if the bytes do not hold a BGZF header
+     */
+    static int getBlockSize(byte[] b, int offset) {
+        if (b[offset] != 31 || b[offset + 1] != (byte) 139 || b[offset + 2] != 8
+                || (b[offset + 3] & 4) == 0) {
+            return -1;
+        }
+        int xlen = (b[offset + 10] & 0xff) | ((b[offset + 11] & 0xff) << 8);
+        // the BC subfield is written first by all known BGZF writers
+        if (xlen < 6 || b[offset + 12] != 66 || b[offset + 13] != 67
+                || b[offset + 14] != 2 || b[offset + 15] != 0) {
+            return -1;
+        }
+        return ((b[offset + 16] & 0xff) | ((b[offset + 17] & 0xff) << 8)) + 1;
+    }
+
+    /**
+     * decompresses one complete block.
+     *
+     * @param inf
+     * @param crc
+     * @param cblock
+     *
+     * compressed block, including header and footer
+     *
+     * @param csize
+     *
+     * size of the compressed block
+     *
+     * @param dest
+     *
+     * array for uncompressed data (65536 bytes are always sufficient)
+     *
+     * @return
+     *
+     * number of uncompressed bytes
+     *
+     * @throws IOException
+     *
+     * if the block is corrupt
+     */
+    static int inflateBlock(Inflater inf, CRC32 crc, byte[] cblock, int csize, byte[] dest) throws IOException {
+        int xlen = (cblock[10] & 0xff) | ((cblock[11] & 0xff) << 8);
+        int datastart = 12 + xlen;
+        int footer = csize - 8;
+        if (footer < datastart) {
+            throw new IOException("BGZF block is corrupt (invalid block size)");
+        }
+        int isize = getInt(cblock, footer + 4);
+        if (isize < 0 || isize > dest.length) {
+            throw new IOException("BGZF block is corrupt (invalid uncompressed size)");
+        }
+
+        int len = 0;
+        inf.reset();
+        inf.setInput(cblock, datastart, footer - datastart);
+        try {
+            while (len < isize && !inf.finished()) {
+                int nowlen = inf.inflate(dest, len, isize - len);
+                if (nowlen == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+                len += nowlen;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("BGZF block is corrupt");
+        }
+        if (len != isize) {
+            throw new IOException("BGZF block is corrupt (uncompressed size mismatch)");
+        }
+
+        crc.reset();
+        crc.update(dest, 0, len);
+        if ((int) crc.getValue() != getInt(cblock, footer)) {
+            throw new IOException("BGZF block is corrupt (CRC32 error)");
+        }
+        return len;
+    }
+
+    static int getInt(byte[] b, int offset) {
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8)
+                | ((b[offset + 2] & 0xff) << 16) | ((b[offset + 3] & 0xff) << 24);
+    }
+
+    /**
+     * reads as many bytes as possible into an array
+     *
+     * @return
+     *
+     * number of bytes read (less than len only at the end of the stream)
+     */
+    static int readFully(InputStream is, byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int nowread = is.read(b, off + total, len - total);
+            if (nowread < 0) {
+                break;
+            }
+            total += nowread;
+        }
+        return total;
+    }
+
+    private int readSource(byte[] b, int off, int len) throws IOException {
+        if (raf != null) {
+            int total = 0;
+            while (total < len) {
+                int nowread = raf.read(b, off + total, len - total);
+                if (nowread < 0) {
+                    break;
+                }
+                total += nowread;
+            }
+            return total;
+        }
+        return readFully(in, b, off, len);
+    }
+
+    /**
+     * reads the block starting at nextaddress into memory.
+     *
+     * @return
+     *
+     * false if there are no more blocks
+     */
+    private boolean loadBlock() throws IOException {
+        int nowread = readSource(cblock, 0, BLOCKHEADERSIZE);
+        if (nowread == 0) {
+            return false;
+        }
+        if (nowread < BLOCKHEADERSIZE) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        int csize = getBlockSize(cblock, 0);
+        if (csize < 0) {
+            throw new IOException("Input is not in the BGZF format");
+        }
+        if (readSource(cblock, BLOCKHEADERSIZE, csize - BLOCKHEADERSIZE) < csize - BLOCKHEADERSIZE) {
+            throw new EOFException("Truncated BGZF block");
+        }
+        blocklen = inflateBlock(inf, crc, cblock, csize, block);
+        blockpos = 0;
+        blockaddress = nextaddress;
+        nextaddress += csize;
+        return true;
+    }
+
+    /**
+     * makes sure there is data available in the current block, moving to the
+     * next non-empty block if needed.
+     *
+     * @return
+     *
+     * false at the end of the stream
+     */
+    private boolean ensureData() throws IOException {
+        while (blockpos == blocklen) {
+            if (endReached || !loadBlock()) {
+                endReached = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        count(1);
+        int ans = block[blockpos] & 0xff;
+        blockpos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int size = 0;
+        while (len > 0 && ensureData()) {
+            int nowlen = Math.min(len, blocklen - blockpos);
+            System.arraycopy(block, blockpos, b, off, nowlen);
+            blockpos += nowlen;
+            off += nowlen;
+            len -= nowlen;
+            size += nowlen;
+        }
+        count(size);
+        return size == 0 ? -1 : size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return blocklen - blockpos;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * virtual offset of the next byte to be read. At the end of a block, this
+     * is the offset of the start of the next block.
+     */
+    public long tell() {
+        if (blockpos == blocklen) {
+            return nextaddress << 16;
+        }
+        return (blockaddress << 16) | blockpos;
+    }
+
+    /**
+     * moves the stream to a virtual offset.
+     *
+     * @param voffset
+     *
+     * virtual offset, e.g. obtained from tell()
+     *
+     * @throws IOException
+     */
+    public void seek(long voffset) throws IOException {
+        if (raf == null) {
+            throw new IOException("Seek is not supported on this stream");
+        }
+        long address = voffset >>> 16;
+        int offset = (int) (voffset & 0xffff);
+        raf.seek(address);
+        nextaddress = address;
+        blocklen = 0;
+        blockpos = 0;
+        endReached = false;
+        if (!loadBlock()) {
+            if (offset != 0) {
+                throw new IOException("Invalid virtual offset: " + voffset);
+            }
+            endReached = true;
+            return;
+        }
+        if (offset > blocklen) {
+            throw new IOException("Invalid virtual offset: " + voffset);
+        }
+        blockpos = offset;
+    }
+
+    /**
+     * sets an index that allows seeking to uncompressed offsets.
+     *
+     * @param index
+     */
+    public void setIndex(BGZFIndex index) {
+        this.index = index;
+    }
+
+    public BGZFIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * moves the stream to a position in the uncompressed data. This requires
+     * an index (see setIndex).
+     *
+     * @param offset
+     *
+     * offset in the uncompressed data
+     *
+     * @throws IOException
+     */
+    public void seekUncompressed(long offset) throws IOException {
+        if (index == null) {
+            throw new IOException("Seek to uncompressed offset requires an index");
+        }
+        int i = index.findBlock(offset);
+        long skip = offset - index.getUncompressedOffset(i);
+        seek(index.getCompressedOffset(i) << 16);
+        // the index may skip several blocks, so move forward block by block
+        while (skip > 0) {
+            if (!ensureData()) {
+                throw new IOException("Offset beyond end of data: " + offset);
+            }
+            int nowskip = (int) Math.min(skip, blocklen - blockpos);
+            blockpos += nowskip;
+            skip -= nowskip;
+        }
+    }
+
+    /**
+     * Closes the input stream (unless it is System.in).
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (inf != null) {
+            CodecPool.returnInflater(inf);
+            CodecPool.returnBuffer(cblock);
+            CodecPool.returnBuffer(block);
+            inf = null;
+            cblock = null;
+            block = null;
+        }
+        if (raf != null) {
+            raf.close();
+        } else if (in != System.in) {
+            in.close();
+        }
+    }
+}
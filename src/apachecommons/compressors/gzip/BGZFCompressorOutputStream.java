@@ -0,0 +1,330 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import apachecommons.compressors.CodecPool;
+import apachecommons.compressors.CompressorOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream writing blocked gzip (BGZF), the format used by samtools and
+ * tabix.
+ *
+ * Data is cut into blocks of at most 0xff00 bytes and each block is written
+ * as a separate gzip member, with an extra header field recording the size of
+ * the compressed block. The output is thus readable by any gzip reader that
+ * handles concatenated members, and it allows random access by seeking to
+ * block boundaries.
+ *
+ * Because blocks are independent, they can be compressed in parallel. Blocks
+ * are handed to a pool of worker threads and written out in their original
+ * order.
+ *
+ * @author Tomasz Konopka
+ */
+public class BGZFCompressorOutputStream extends CompressorOutputStream {
+
+    /** maximal number of uncompressed bytes in a block */
+    public static final int BLOCKDATASIZE = 0xff00;
+    /** maximal size of a compressed block, including header and footer */
+    public static final int MAXBLOCKSIZE = 0x10000;
+    // header: gzip magic, deflate, FEXTRA flag, mtime, xfl, OS, XLEN=6, 'B', 'C', SLEN=2
+    private static final byte[] HEADER = {
+        31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 66, 67, 2, 0};
+    private static final int HEADERSIZE = HEADER.length + 2;
+    private static final int FOOTERSIZE = 8;
+    /** empty block that marks the end of a BGZF file */
+    public static final byte[] EOFBLOCK = {
+        31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 66, 67, 2, 0,
+        27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private final OutputStream out;
+    // data for the block being filled
+    private byte[] block = CodecPool.getBuffer(BLOCKDATASIZE);
+    private int blocklen = 0;
+    // parallel compression: compressed blocks waiting to be written, in order
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private final int maxpending;
+    private final int level;
+    private boolean closed = false;
+
+    /**
+     * creates a single-threaded stream with default compression level
+     *
+     * @param out
+     */
+    public BGZFCompressorOutputStream(OutputStream out) {
+        this(out, 1);
+    }
+
+    /**
+     * creates a stream with default compression level
+     *
+     * @param out
+     * @param numthreads
+     */
+    public BGZFCompressorOutputStream(OutputStream out, int numthreads) {
+        this(out, numthreads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     *
+     * @param out
+     *
+     * stream that will receive compressed blocks
+     *
+     * @param numthreads
+     *
+     * number of threads used for compression. With 1, blocks are compressed
+     * on the calling thread.
+     *
+     * @param level
+     *
+     * compression level, as in java.util.zip.Deflater
+     *
+     */
+    public BGZFCompressorOutputStream(OutputStream out, int numthreads, int level) {
+        this.out = out;
+        numthreads = Math.max(1, numthreads);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.level = level;
+        if (numthreads > 1) {
+            executor = Executors.newFixedThreadPool(numthreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "bgzf-compressor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            maxpending = numthreads * 4;
+        } else {
+            executor = null;
+            maxpending = 0;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (blocklen == BLOCKDATASIZE) {
+            endBlock();
+        }
+        block[blocklen] = (byte) b;
+        blocklen++;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int from, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (length > 0) {
+            if (blocklen == BLOCKDATASIZE) {
+                endBlock();
+            }
+            int nowlen = Math.min(length, BLOCKDATASIZE - blocklen);
+            System.arraycopy(b, from, block, blocklen, nowlen);
+            blocklen += nowlen;
+            from += nowlen;
+            length -= nowlen;
+        }
+    }
+
+    /**
+     * compresses the current block (if not empty) and writes out all
+     * pending blocks.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        if (blocklen > 0) {
+            endBlock();
+        }
+        while (!pending.isEmpty()) {
+            writePending();
+        }
+        out.flush();
+    }
+
+    /**
+     * writes all remaining data and the end-of-file marker, then closes the
+     * underlying stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            out.write(EOFBLOCK);
+        } finally {
+            closed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            CodecPool.returnBuffer(block);
+            block = null;
+            out.close();
+        }
+    }
+
+    /**
+     * sends the current block for compression and starts a new block.
+     */
+    private void endBlock() throws IOException {
+        if (executor == null) {
+            out.write(compressBlock(block, blocklen));
+            blocklen = 0;
+            return;
+        }
+
+        final byte[] data = block;
+        final int datalen = blocklen;
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                try {
+                    return compressBlock(data, datalen);
+                } finally {
+                    CodecPool.returnBuffer(data);
+                }
+            }
+        }));
+        block = CodecPool.getBuffer(BLOCKDATASIZE);
+        blocklen = 0;
+        while (pending.size() > maxpending) {
+            writePending();
+        }
+    }
+
+    /**
+     * waits for the oldest pending block and writes it out
+     */
+    private void writePending() throws IOException {
+        Future<byte[]> next = pending.poll();
+        try {
+            out.write(next.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Error compressing block: " + ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    /**
+     * compresses data into a complete BGZF block
+     *
+     * @param data
+     * @param datalen
+     * @return
+     *
+     * bytes of the block, including header and footer
+     */
+    private byte[] compressBlock(byte[] data, int datalen) throws IOException {
+        Deflater deflater = CodecPool.getDeflater(level);
+        byte[] ans = CodecPool.getBuffer(MAXBLOCKSIZE);
+        int clen;
+        try {
+            clen = deflate(deflater, data, datalen, ans);
+            if (clen < 0) {
+                // data does not compress well enough; store it instead
+                Deflater storer = CodecPool.getDeflater(Deflater.NO_COMPRESSION);
+                try {
+                    clen = deflate(storer, data, datalen, ans);
+                } finally {
+                    CodecPool.returnDeflater(storer, Deflater.NO_COMPRESSION);
+                }
+            }
+            if (clen < 0) {
+                throw new IOException("Block does not fit into BGZF size limit");
+            }
+        } finally {
+            CodecPool.returnDeflater(deflater, level);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, datalen);
+        int blocksize = HEADERSIZE + clen + FOOTERSIZE;
+        System.arraycopy(HEADER, 0, ans, 0, HEADER.length);
+        putShort(ans, HEADER.length, blocksize - 1);
+        int footer = HEADERSIZE + clen;
+        putInt(ans, footer, (int) crc.getValue());
+        putInt(ans, footer + 4, datalen);
+        byte[] trimmed = new byte[blocksize];
+        System.arraycopy(ans, 0, trimmed, 0, blocksize);
+        CodecPool.returnBuffer(ans);
+        return trimmed;
+    }
+
+    /**
+     * deflates data into a buffer, after space for a header
+     *
+     * @return
+     *
+     * number of compressed bytes, or -1 if they do not fit into a block
+     */
+    private static int deflate(Deflater deflater, byte[] data, int datalen, byte[] ans) {
+        deflater.reset();
+        deflater.setInput(data, 0, datalen);
+        deflater.finish();
+        int limit = MAXBLOCKSIZE - HEADERSIZE - FOOTERSIZE;
+        int clen = 0;
+        while (!deflater.finished() && clen < limit) {
+            clen += deflater.deflate(ans, HEADERSIZE + clen, limit - clen);
+        }
+        if (!deflater.finished()) {
+            return -1;
+        }
+        return clen;
+    }
+
+    private static void putShort(byte[] b, int offset, int value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >>> 8);
+        b[offset + 2] = (byte) (value >>> 16);
+        b[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Index of the blocks in a BGZF file, in the .gzi format used by bgzip.
+ *
+ * The index holds pairs of offsets (compressed, uncompressed) at block
+ * boundaries. The first pair (0, 0) is implicit and is not stored in .gzi
+ * files, but it is included in the arrays held by this class.
+ *
+ * @author Tomasz Konopka
+ */
+public class BGZFIndex {
+
+    private long[] coffsets;
+    private long[] uoffsets;
+    private int size;
+
+    private BGZFIndex() {
+        coffsets = new long[1024];
+        uoffsets = new long[1024];
+        size = 1;
+    }
+
+    private void add(long coffset, long uoffset) {
+        if (size == coffsets.length) {
+            coffsets = Arrays.copyOf(coffsets, size * 2);
+            uoffsets = Arrays.copyOf(uoffsets, size * 2);
+        }
+        coffsets[size] = coffset;
+        uoffsets[size] = uoffset;
+        size++;
+    }
+
+    /**
+     *
+     * @param gzifile
+     * @return
+     *
+     * an index read from a .gzi file
+     *
+     * @throws IOException
+     */
+    public static BGZFIndex read(File gzifile) throws IOException {
+        BGZFIndex index = new BGZFIndex();
+        InputStream is = new BufferedInputStream(new FileInputStream(gzifile));
+        try {
+            byte[] b = new byte[16];
+            if (BGZFCompressorInputStream.readFully(is, b, 0, 8) < 8) {
+                throw new EOFException("Truncated .gzi file");
+            }
+            long numentries = getLong(b, 0);
+            for (long i = 0; i < numentries; i++) {
+                if (BGZFCompressorInputStream.readFully(is, b, 0, 16) < 16) {
+                    throw new EOFException("Truncated .gzi file");
+                }
+                index.add(getLong(b, 0), getLong(b, 8));
+            }
+        } finally {
+            is.close();
+        }
+        return index;
+    }
+
+    /**
+     * creates an index by scanning a BGZF file. Only block headers and
+     * footers are read; the data is not decompressed.
+     *
+     * @param bgzffile
+     * @return
+     * @throws IOException
+     */
+    public static BGZFIndex build(File bgzffile) throws IOException {
+        BGZFIndex index = new BGZFIndex();
+        RandomAccessFile raf = new RandomAccessFile(bgzffile, "r");
+        try {
+            long filesize = raf.length();
+            long coffset = 0, uoffset = 0;
+            byte[] header = new byte[BGZFCompressorInputStream.BLOCKHEADERSIZE];
+            byte[] footer = new byte[4];
+            while (coffset < filesize) {
+                raf.seek(coffset);
+                raf.readFully(header);
+                int csize = BGZFCompressorInputStream.getBlockSize(header, 0);
+                if (csize < 0) {
+                    throw new IOException("Input is not in the BGZF format");
+                }
+                raf.seek(coffset + csize - 4);
+                raf.readFully(footer);
+                int isize = BGZFCompressorInputStream.getInt(footer, 0);
+                coffset += csize;
+                uoffset += isize;
+                // as bgzip, record the end of each block that holds data
+                if (isize > 0) {
+                    index.add(coffset, uoffset);
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return index;
+    }
+
+    /**
+     * writes the index in the .gzi format
+     *
+     * @param gzifile
+     * @throws IOException
+     */
+    public void write(File gzifile) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(gzifile));
+        try {
+            byte[] b = new byte[16];
+            putLong(b, 0, size - 1);
+            os.write(b, 0, 8);
+            for (int i = 1; i < size; i++) {
+                putLong(b, 0, coffsets[i]);
+                putLong(b, 8, uoffsets[i]);
+                os.write(b, 0, 16);
+            }
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     *
+     * @param bgzffile
+     * @return
+     *
+     * the file where bgzip would place the index for a BGZF file
+     */
+    public static File getIndexFile(File bgzffile) {
+        return new File(bgzffile.getAbsolutePath() + ".gzi");
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of entries in the index, including the implicit first entry
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getCompressedOffset(int i) {
+        return coffsets[i];
+    }
+
+    public long getUncompressedOffset(int i) {
+        return uoffsets[i];
+    }
+
+    /**
+     *
+     * @param uoffset
+     *
+     * offset in the uncompressed data
+     *
+     * @return
+     *
+     * index of the last entry that starts at or before the offset
+     */
+    public int findBlock(long uoffset) {
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (uoffsets[mid] <= uoffset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private static long getLong(byte[] b, int offset) {
+        long ans = 0;
+        for (int i = 7; i >= 0; i--) {
+            ans = (ans << 8) | (b[offset + i] & 0xff);
+        }
+        return ans;
+    }
+
+    private static void putLong(byte[] b, int offset, long value) {
+        for (int i = 0; i < 8; i++) {
+            b[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
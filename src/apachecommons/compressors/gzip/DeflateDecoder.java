@@ -0,0 +1,471 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Decoder for raw deflate data that can start at any block boundary, with or
+ * without knowing the preceding 32KB of output (the window).
+ *
+ * Output is produced as chars. The first WINDOWSIZE chars of the output array
+ * hold the window. When the window is not known, these are placeholders: char
+ * 256+i stands for byte i of the window. Back-references into the window then
+ * copy the placeholders, which can be replaced by real bytes once the window
+ * becomes known (see resolve).
+ *
+ * Code tables are validated as strictly as zlib does, so that a decoder
+ * started at a random bit position fails quickly.
+ *
+ * @author Tomasz Konopka
+ */
+final class DeflateDecoder {
+
+    static final int WINDOWSIZE = 32768;
+    private static final int[] LENBASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+        35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENEXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+        3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final int[] DISTBASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+        257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTEXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+        7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    private static final int[] PRECODEORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+    // tables for blocks with fixed codes
+    private static final int[] FIXEDLIT = new int[1 << 9];
+    private static final int[] FIXEDDIST = new int[1 << 5];
+
+    static {
+        byte[] lens = new byte[288];
+        Arrays.fill(lens, 0, 144, (byte) 8);
+        Arrays.fill(lens, 144, 256, (byte) 9);
+        Arrays.fill(lens, 256, 280, (byte) 7);
+        Arrays.fill(lens, 280, 288, (byte) 8);
+        buildTable(lens, 0, 288, FIXEDLIT, false);
+        Arrays.fill(lens, 0, 32, (byte) 5);
+        buildTable(lens, 0, 32, FIXEDDIST, false);
+    }
+    // input
+    private final ByteBuffer in;
+    private final long limit;
+    private long bytepos = 0;
+    private long bitbuf = 0;
+    private int bitcount = 0;
+    // tables for the current block (entries are symbol << 4 | code length)
+    private final int[] littable = new int[1 << 15];
+    private final int[] disttable = new int[1 << 15];
+    private final int[] pretable = new int[1 << 7];
+    private final byte[] prelens = new byte[19];
+    private final byte[] lens = new byte[320];
+    // output
+    private char[] out;
+    private int outlen;
+    private int validfrom;
+
+    /**
+     * Result of decoding a sequence of blocks
+     */
+    static final class Result {
+
+        // bit positions of the first block and just after the last block
+        long startbit, endbit;
+        // true if the last block was marked final
+        boolean last;
+        // decoded data, starting at index WINDOWSIZE
+        char[] data;
+        int length;
+    }
+
+    /**
+     *
+     * @param in
+     *
+     * buffer with compressed data. Positions used by the decoder are absolute
+     * positions in the buffer.
+     */
+    DeflateDecoder(ByteBuffer in) {
+        this.in = in.duplicate();
+        this.limit = in.limit();
+    }
+
+    private void refill() {
+        while (bitcount <= 56) {
+            int b = bytepos < limit ? in.get((int) bytepos) & 0xff : 0;
+            bitbuf |= (long) b << bitcount;
+            bitcount += 8;
+            bytepos++;
+        }
+    }
+
+    private int bits(int n) {
+        if (bitcount < n) {
+            refill();
+        }
+        int ans = (int) (bitbuf & ((1L << n) - 1));
+        bitbuf >>>= n;
+        bitcount -= n;
+        return ans;
+    }
+
+    private long position() {
+        return (bytepos << 3) - bitcount;
+    }
+
+    private void seek(long bit) {
+        bytepos = bit >>> 3;
+        bitbuf = 0;
+        bitcount = 0;
+        bits((int) (bit & 7));
+    }
+
+    private int decodeSymbol(int[] table, int tablebits) throws DataFormatException {
+        if (bitcount < 15) {
+            refill();
+        }
+        int entry = table[(int) bitbuf & ((1 << tablebits) - 1)];
+        int len = entry & 15;
+        if (len == 0) {
+            throw new DataFormatException("invalid code");
+        }
+        bitbuf >>>= len;
+        bitcount -= len;
+        return entry >>> 4;
+    }
+
+    /**
+     * builds a lookup table for a canonical Huffman code. The table is
+     * indexed by the next bits of input (least significant bit first).
+     *
+     * @param complete
+     *
+     * if true, the code must be complete. Otherwise, an incomplete code is
+     * accepted only if it consists of a single code of length one (as in
+     * zlib).
+     *
+     * @return
+     *
+     * number of bits used to index the table, or -1 if the code lengths are
+     * invalid
+     */
+    private static int buildTable(byte[] lens, int offset, int n, int[] table, boolean complete) {
+        int[] count = new int[16];
+        for (int i = 0; i < n; i++) {
+            count[lens[offset + i]]++;
+        }
+        int max = 15;
+        while (max > 0 && count[max] == 0) {
+            max--;
+        }
+        if (max == 0) {
+            // no codes at all; any attempt to decode will fail
+            table[0] = 0;
+            table[1] = 0;
+            return complete ? -1 : 1;
+        }
+
+        int left = 1;
+        for (int len = 1; len <= 15; len++) {
+            left = (left << 1) - count[len];
+            if (left < 0) {
+                return -1;
+            }
+        }
+        if (left > 0 && (complete || max != 1)) {
+            return -1;
+        }
+
+        int[] next = new int[16];
+        int code = 0;
+        count[0] = 0;
+        for (int len = 1; len <= 15; len++) {
+            code = (code + count[len - 1]) << 1;
+            next[len] = code;
+        }
+        int size = 1 << max;
+        Arrays.fill(table, 0, size, 0);
+        for (int sym = 0; sym < n; sym++) {
+            int len = lens[offset + sym];
+            if (len == 0) {
+                continue;
+            }
+            int reversed = Integer.reverse(next[len]) >>> (32 - len);
+            next[len]++;
+            for (int i = reversed; i < size; i += 1 << len) {
+                table[i] = (sym << 4) | len;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * reads the header of a block with dynamic codes and prepares tables.
+     *
+     * @return
+     *
+     * number of bits for the literal/length table and the distance table,
+     * packed as litbits << 8 | distbits
+     */
+    private int readDynamicTables() throws DataFormatException {
+        int hlit = bits(5) + 257;
+        int hdist = bits(5) + 1;
+        int hclen = bits(4) + 4;
+        if (hlit > 286 || hdist > 30) {
+            throw new DataFormatException("too many length or distance symbols");
+        }
+        Arrays.fill(prelens, (byte) 0);
+        for (int i = 0; i < hclen; i++) {
+            prelens[PRECODEORDER[i]] = (byte) bits(3);
+        }
+        int prebits = buildTable(prelens, 0, 19, pretable, true);
+        if (prebits < 0) {
+            throw new DataFormatException("invalid code lengths set");
+        }
+
+        int total = hlit + hdist;
+        int i = 0;
+        while (i < total) {
+            int sym = decodeSymbol(pretable, prebits);
+            if (sym < 16) {
+                lens[i] = (byte) sym;
+                i++;
+            } else {
+                byte value = 0;
+                int repeat;
+                if (sym == 16) {
+                    if (i == 0) {
+                        throw new DataFormatException("invalid bit length repeat");
+                    }
+                    value = lens[i - 1];
+                    repeat = 3 + bits(2);
+                } else if (sym == 17) {
+                    repeat = 3 + bits(3);
+                } else {
+                    repeat = 11 + bits(7);
+                }
+                if (i + repeat > total) {
+                    throw new DataFormatException("invalid bit length repeat");
+                }
+                Arrays.fill(lens, i, i + repeat, value);
+                i += repeat;
+            }
+        }
+        if (lens[256] == 0) {
+            throw new DataFormatException("missing end-of-block code");
+        }
+        int litbits = buildTable(lens, 0, hlit, littable, false);
+        int distbits = buildTable(lens, hlit, hdist, disttable, false);
+        if (litbits < 0 || distbits < 0) {
+            throw new DataFormatException("invalid literal/lengths or distances set");
+        }
+        return (litbits << 8) | distbits;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (outlen + extra > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, outlen + extra));
+        }
+    }
+
+    private void decodeStored() throws DataFormatException {
+        bits((int) ((8 - (position() & 7)) & 7));
+        int len = bits(16);
+        int nlen = bits(16);
+        if ((len ^ 0xffff) != nlen) {
+            throw new DataFormatException("invalid stored block lengths");
+        }
+        ensureCapacity(len);
+        for (int i = 0; i < len; i++) {
+            out[outlen] = (char) bits(8);
+            outlen++;
+        }
+    }
+
+    private void decodeHuffman(int[] lit, int litbits, int[] dist, int distbits) throws DataFormatException {
+        char[] nowout = out;
+        while (true) {
+            if (outlen + 258 > nowout.length) {
+                // input past the end reads as zeros, which could decode forever
+                if (position() > (limit << 3)) {
+                    throw new DataFormatException("unexpected end of data");
+                }
+                ensureCapacity(258);
+                nowout = out;
+            }
+            int sym = decodeSymbol(lit, litbits);
+            if (sym < 256) {
+                nowout[outlen] = (char) sym;
+                outlen++;
+            } else if (sym == 256) {
+                return;
+            } else {
+                sym -= 257;
+                if (sym >= 29) {
+                    throw new DataFormatException("invalid literal/length code");
+                }
+                int len = LENBASE[sym] + bits(LENEXTRA[sym]);
+                int dsym = decodeSymbol(dist, distbits);
+                if (dsym >= 30) {
+                    throw new DataFormatException("invalid distance code");
+                }
+                int from = outlen - DISTBASE[dsym] - bits(DISTEXTRA[dsym]);
+                if (from < validfrom) {
+                    throw new DataFormatException("invalid distance too far back");
+                }
+                // element by element, as source and destination may overlap
+                for (int i = 0; i < len; i++) {
+                    nowout[outlen + i] = nowout[from + i];
+                }
+                outlen += len;
+            }
+        }
+    }
+
+    /**
+     * decodes consecutive blocks.
+     *
+     * @param startbit
+     *
+     * bit position of the first block
+     *
+     * @param stopbit
+     *
+     * decoding stops at the first block boundary at or after this position
+     *
+     * @param window
+     *
+     * the 32KB of output preceding the first block (right-aligned), or null
+     * if this is not known
+     *
+     * @param windowlen
+     *
+     * number of valid bytes at the end of the window
+     *
+     * @param softcap
+     *
+     * decoding also stops at the first block boundary after this many chars
+     * have been produced
+     *
+     * @return
+     *
+     * @throws DataFormatException
+     */
+    Result decode(long startbit, long stopbit, byte[] window, int windowlen, int softcap) throws DataFormatException {
+        out = new char[WINDOWSIZE + 65536];
+        if (window != null) {
+            for (int i = 0; i < WINDOWSIZE; i++) {
+                out[i] = (char) (window[i] & 0xff);
+            }
+            validfrom = WINDOWSIZE - windowlen;
+        } else {
+            for (int i = 0; i < WINDOWSIZE; i++) {
+                out[i] = (char) (256 + i);
+            }
+            validfrom = 0;
+        }
+        outlen = WINDOWSIZE;
+
+        Result result = new Result();
+        result.startbit = startbit;
+        seek(startbit);
+        while (true) {
+            long blockstart = position();
+            if (blockstart != startbit && (blockstart >= stopbit || outlen - WINDOWSIZE >= softcap)) {
+                result.endbit = blockstart;
+                break;
+            }
+            boolean bfinal = bits(1) == 1;
+            int btype = bits(2);
+            if (btype == 0) {
+                decodeStored();
+            } else if (btype == 1) {
+                decodeHuffman(FIXEDLIT, 9, FIXEDDIST, 5);
+            } else if (btype == 2) {
+                int tablebits = readDynamicTables();
+                decodeHuffman(littable, tablebits >>> 8, disttable, tablebits & 0xff);
+            } else {
+                throw new DataFormatException("invalid block type");
+            }
+            if (position() > (limit << 3)) {
+                throw new DataFormatException("unexpected end of data");
+            }
+            if (bfinal) {
+                result.last = true;
+                result.endbit = position();
+                break;
+            }
+        }
+        result.data = out;
+        result.length = outlen - WINDOWSIZE;
+        out = null;
+        return result;
+    }
+
+    /**
+     * quick test whether a non-final block with dynamic codes could start at
+     * a bit position (checks the block header and the code lengths code).
+     *
+     * @param bit
+     * @return
+     */
+    boolean isCandidate(long bit) {
+        // check the first 13 bits without filling the bit buffer
+        int pos = (int) (bit >>> 3);
+        if (pos + 3 > limit) {
+            return false;
+        }
+        int head = ((in.get(pos) & 0xff) | ((in.get(pos + 1) & 0xff) << 8)
+                | ((in.get(pos + 2) & 0xff) << 16)) >>> (bit & 7);
+        // requires bfinal = 0, btype = 2, and at most 29 length or distance codes
+        if ((head & 7) != 4 || ((head >>> 3) & 31) > 29 || ((head >>> 8) & 31) > 29) {
+            return false;
+        }
+        seek(bit + 13);
+        int hclen = bits(4) + 4;
+        Arrays.fill(prelens, (byte) 0);
+        for (int i = 0; i < hclen; i++) {
+            prelens[PRECODEORDER[i]] = (byte) bits(3);
+        }
+        return buildTable(prelens, 0, 19, pretable, true) >= 0;
+    }
+
+    /**
+     * replaces placeholders in decoded data with bytes from the window.
+     *
+     * @param result
+     * @param window
+     *
+     * 32KB of output preceding the decoded data (right-aligned)
+     *
+     * @param dest
+     *
+     * array for the resolved bytes (at least result.length)
+     */
+    static void resolve(Result result, byte[] window, byte[] dest) {
+        char[] data = result.data;
+        int end = WINDOWSIZE + result.length;
+        for (int i = WINDOWSIZE, j = 0; i < end; i++, j++) {
+            char c = data[i];
+            dest[j] = c < 256 ? (byte) c : window[c - 256];
+        }
+    }
+}
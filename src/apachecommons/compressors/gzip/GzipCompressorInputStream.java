@@ -18,6 +18,7 @@
  */
 package apachecommons.compressors.gzip;
 
+import apachecommons.compressors.CodecPool;
 import apachecommons.compressors.CompressorInputStream;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
@@ -58,14 +59,17 @@ public class GzipCompressorInputStream extends CompressorInputStream {
     // True if decompressing multimember streams.
     private final boolean decompressConcatenated;
 
-    // Buffer to hold the input data
-    private final byte[] buf = new byte[8192];
+    // Buffer to hold the input data (from CodecPool, returned on close)
+    private byte[] buf = CodecPool.getBuffer(8192);
 
     // Amount of data in buf.
     private int bufUsed = 0;
 
-    // Decompressor
-    private Inflater inf = new Inflater(true);
+    // Decompressor (from CodecPool, returned on close)
+    private Inflater inf = CodecPool.getInflater();
+
+    // Reader for header and trailer fields
+    private final DataInputStream inData;
 
     // CRC32 from uncompressed data
     private CRC32 crc = new CRC32();
@@ -123,9 +127,15 @@ public class GzipCompressorInputStream extends CompressorInputStream {
         } else {
             in = new BufferedInputStream(inputStream);
         }
+        inData = new DataInputStream(in);
 
         this.decompressConcatenated = decompressConcatenated;
-        init(true);
+        try {
+            init(true);
+        } catch (IOException e) {
+            releaseCodec();
+            throw e;
+        }
     }
 
     private boolean init(boolean isFirstMember) throws IOException {
@@ -148,7 +158,6 @@ public class GzipCompressorInputStream extends CompressorInputStream {
         }
 
         // Parsing the rest of the header may throw EOFException.
-        DataInputStream inData = new DataInputStream(in);
         int method = inData.readUnsignedByte();
         if (method != 8) {
             throw new IOException("Unsupported compression method "
@@ -180,12 +189,12 @@ public class GzipCompressorInputStream extends CompressorInputStream {
 
         // Original file name, ignored
         if ((flg & FNAME) != 0) {
-            readToNull(inData);
+            readToNull();
         }
 
         // Comment, ignored
         if ((flg & FCOMMENT) != 0) {
-            readToNull(inData);
+            readToNull();
         }
 
         // Header "CRC16" which is actually a truncated CRC32 (which isn't
@@ -205,7 +214,7 @@ public class GzipCompressorInputStream extends CompressorInputStream {
         return true;
     }
 
-    private void readToNull(DataInputStream inData) throws IOException {
+    private void readToNull() throws IOException {
         while (inData.readUnsignedByte() != 0x00) {}
     }
 
@@ -272,8 +281,6 @@ public class GzipCompressorInputStream extends CompressorInputStream {
 
                 bufUsed = 0;
 
-                DataInputStream inData = new DataInputStream(in);
-
                 // CRC32
                 long crcStored = 0;
                 for (int i = 0; i < 4; ++i) {
@@ -298,8 +305,7 @@ public class GzipCompressorInputStream extends CompressorInputStream {
 
                 // See if this is the end of the file.
                 if (!decompressConcatenated || !init(false)) {
-                    inf.end();
-                    inf = null;
+                    releaseCodec();
                     endReached = true;
                     return size == 0 ? -1 : size;
                 }
@@ -309,6 +315,20 @@ public class GzipCompressorInputStream extends CompressorInputStream {
         return size;
     }
 
+    /**
+     * Gives the inflater and the input buffer back to the pool.
+     */
+    private void releaseCodec() {
+        if (this.inf != null) {
+            CodecPool.returnInflater(this.inf);
+            this.inf = null;
+        }
+        if (this.buf != null) {
+            CodecPool.returnBuffer(this.buf);
+            this.buf = null;
+        }
+    }
+
     /**
      * Checks if the signature matches what is expected for a .gz file.
      *
@@ -342,10 +362,7 @@ public class GzipCompressorInputStream extends CompressorInputStream {
      */
     @Override
     public void close() throws IOException {
-        if (inf != null) {
-            inf.end();
-            inf = null;
-        }
+        releaseCodec();
 
         if (this.in != System.in) {
             this.in.close();
@@ -18,23 +18,68 @@
  */
 package apachecommons.compressors.gzip;
 
+import apachecommons.compressors.CodecPool;
 import apachecommons.compressors.CompressorOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
+/**
+ * Output stream that writes a single gzip member.
+ * <p>
+ * The output is the same as with <code>java.util.zip.GZIPOutputStream</code>,
+ * but the deflater and the output buffer are taken from {@link CodecPool}
+ * and given back on close.
+ */
 public class GzipCompressorOutputStream extends CompressorOutputStream {
 
-    private final GZIPOutputStream out;
+    // gzip header: magic, deflate method, no flags, no mtime, no extra flags,
+    // unknown OS (as written by GZIPOutputStream)
+    private static final byte[] HEADER = {31, (byte) 139, 8, 0, 0, 0, 0, 0, 0, 0};
+
+    private final OutputStream out;
+
+    private final int level;
+
+    // Compressor and buffer for its output (from CodecPool)
+    private Deflater deflater;
+
+    private byte[] buf;
+
+    // CRC32 and size of the uncompressed data
+    private final CRC32 crc = new CRC32();
+
+    private int size = 0;
+
+    private boolean closed = false;
 
     public GzipCompressorOutputStream( final OutputStream outputStream ) throws IOException {
-        out = new GZIPOutputStream(outputStream);
+        this(outputStream, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param outputStream stream that receives the compressed data
+     * @param level compression level, as in java.util.zip.Deflater
+     * @throws IOException if the header cannot be written
+     */
+    public GzipCompressorOutputStream( final OutputStream outputStream, final int level ) throws IOException {
+        this.out = outputStream;
+        this.level = level;
+        this.deflater = CodecPool.getDeflater(level);
+        this.buf = CodecPool.getBuffer(65536);
+        try {
+            this.out.write(HEADER);
+        } catch (IOException e) {
+            releaseCodec();
+            throw e;
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     public void write(int b) throws IOException {
-        out.write(b);
+        write(new byte[]{(byte) b}, 0, 1);
     }
 
     /**
@@ -44,7 +89,7 @@ public class GzipCompressorOutputStream extends CompressorOutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        out.write(b);
+        write(b, 0, b.length);
     }
 
     /**
@@ -54,12 +99,83 @@ public class GzipCompressorOutputStream extends CompressorOutputStream {
      */
     @Override
     public void write(byte[] b, int from, int length) throws IOException {
-        out.write(b, from, length);
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+        if (length == 0) {
+            return;
+        }
+        this.crc.update(b, from, length);
+        this.size += length;
+        this.deflater.setInput(b, from, length);
+        while (!this.deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    private void deflate() throws IOException {
+        int len = this.deflater.deflate(this.buf, 0, this.buf.length);
+        if (len > 0) {
+            this.out.write(this.buf, 0, len);
+        }
     }
 
+    /**
+     * Flushes the underlying stream. Data held by the deflater is not
+     * forced out, as with GZIPOutputStream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    /**
+     * Writes the remaining compressed data and the gzip trailer, closes the
+     * underlying stream, and gives the deflater back to the pool.
+     *
+     * @throws IOException
+     */
     @Override
     public void close() throws IOException {
-        out.close();
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.deflater.finish();
+            while (!this.deflater.finished()) {
+                deflate();
+            }
+            byte[] trailer = new byte[8];
+            putInt(trailer, 0, (int) this.crc.getValue());
+            putInt(trailer, 4, this.size);
+            this.out.write(trailer);
+            this.out.close();
+        } finally {
+            releaseCodec();
+        }
+    }
+
+    /**
+     * Gives the deflater and the output buffer back to the pool.
+     */
+    private void releaseCodec() {
+        if (this.deflater != null) {
+            CodecPool.returnDeflater(this.deflater, this.level);
+            this.deflater = null;
+        }
+        if (this.buf != null) {
+            CodecPool.returnBuffer(this.buf);
+            this.buf = null;
+        }
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            b[offset + i] = (byte) (value >>> (8 * i));
+        }
     }
 
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import apachecommons.compressors.CodecPool;
+import apachecommons.compressors.CompressorInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream reading blocked gzip (BGZF) data using several threads.
+ *
+ * Compressed blocks are read on the calling thread (block sizes are recorded
+ * in the block headers, so no decompression is needed to find the
+ * boundaries). Blocks are inflated on a pool of worker threads, and their
+ * contents are returned in the original order. The number of blocks in
+ * flight is bounded, so memory use does not depend on the size of the file.
+ *
+ * @author Tomasz Konopka
+ */
+public class ParallelBGZFCompressorInputStream extends CompressorInputStream {
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private final int maxpending;
+    private boolean inputEnd = false;
+    // uncompressed data of the current block
+    private byte[] block = new byte[0];
+    private int blockpos = 0;
+
+    /**
+     *
+     * @param inputStream
+     *
+     * stream with BGZF data
+     *
+     * @param numthreads
+     *
+     * number of threads used for decompression
+     *
+     */
+    public ParallelBGZFCompressorInputStream(InputStream inputStream, int numthreads) {
+        in = inputStream;
+        numthreads = Math.max(1, numthreads);
+        executor = Executors.newFixedThreadPool(numthreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "bgzf-decompressor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        maxpending = numthreads * 4;
+    }
+
+    /**
+     * reads compressed blocks and submits them for decompression until the
+     * queue of pending blocks is full.
+     */
+    private void fillPending() throws IOException {
+        byte[] header = new byte[BGZFCompressorInputStream.BLOCKHEADERSIZE];
+        while (!inputEnd && pending.size() < maxpending) {
+            int nowread = BGZFCompressorInputStream.readFully(in, header, 0, header.length);
+            if (nowread == 0) {
+                inputEnd = true;
+                return;
+            }
+            if (nowread < header.length) {
+                throw new EOFException("Truncated BGZF block");
+            }
+            int csize = BGZFCompressorInputStream.getBlockSize(header, 0);
+            if (csize < 0) {
+                throw new IOException("Input is not in the BGZF format");
+            }
+            final byte[] cblock = new byte[csize];
+            System.arraycopy(header, 0, cblock, 0, header.length);
+            if (BGZFCompressorInputStream.readFully(in, cblock, header.length, csize - header.length) < csize - header.length) {
+                throw new EOFException("Truncated BGZF block");
+            }
+            pending.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return inflate(cblock);
+                }
+            }));
+        }
+    }
+
+    /**
+     * decompresses one block (runs on a worker thread)
+     */
+    private byte[] inflate(byte[] cblock) throws IOException {
+        Inflater inf = CodecPool.getInflater();
+        try {
+            int isize = BGZFCompressorInputStream.getInt(cblock, cblock.length - 4);
+            if (isize < 0 || isize > BGZFCompressorOutputStream.MAXBLOCKSIZE) {
+                throw new IOException("BGZF block is corrupt (invalid uncompressed size)");
+            }
+            byte[] data = new byte[isize];
+            BGZFCompressorInputStream.inflateBlock(inf, new CRC32(), cblock, cblock.length, data);
+            return data;
+        } finally {
+            CodecPool.returnInflater(inf);
+        }
+    }
+
+    /**
+     * moves to the next non-empty block
+     *
+     * @return
+     *
+     * false at the end of the stream
+     */
+    private boolean ensureData() throws IOException {
+        while (blockpos == block.length) {
+            fillPending();
+            if (pending.isEmpty()) {
+                return false;
+            }
+            try {
+                block = pending.poll().get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decompressing", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Error decompressing block", cause);
+            }
+            blockpos = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        count(1);
+        int ans = block[blockpos] & 0xff;
+        blockpos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int size = 0;
+        while (len > 0 && ensureData()) {
+            int nowlen = Math.min(len, block.length - blockpos);
+            System.arraycopy(block, blockpos, b, off, nowlen);
+            blockpos += nowlen;
+            off += nowlen;
+            len -= nowlen;
+            size += nowlen;
+        }
+        count(size);
+        return size == 0 ? -1 : size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return block.length - blockpos;
+    }
+
+    /**
+     * Closes the input stream (unless it is System.in) and stops the worker
+     * threads.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        if (in != System.in) {
+            in.close();
+        }
+    }
+}
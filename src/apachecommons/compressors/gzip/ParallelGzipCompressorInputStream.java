@@ -0,0 +1,434 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package apachecommons.compressors.gzip;
+
+import apachecommons.compressors.CompressorInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+/**
+ * Experimental input stream decompressing ordinary (non-blocked) gzip files
+ * using several threads.
+ *
+ * The compressed file is split into chunks of fixed size. For each chunk
+ * except the first, a worker thread searches for a bit position where a
+ * deflate block could start, and decodes from there without knowing the
+ * preceding data; back-references into the unknown window are kept as
+ * placeholders. The calling thread decodes the file in order. When it reaches
+ * the start position found for a chunk, it takes the speculative result and
+ * replaces the placeholders with the now known window. When a guess is wrong
+ * or no block start was found, the calling thread decodes that part of the
+ * file itself, so the output is always the same as from a serial decoder.
+ *
+ * CRC and size of each gzip member are verified. Files are memory-mapped, so
+ * this stream is limited to files smaller than 2GB.
+ *
+ * @author Tomasz Konopka
+ */
+public class ParallelGzipCompressorInputStream extends CompressorInputStream {
+
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+    private static final int FRESERVED = 0xE0;
+    // size of compressed chunks given to workers
+    private static final int CHUNKSIZE = 1 << 20;
+    // output limits (in bytes) for a single decoding call
+    private static final int SERIALCAP = 1 << 22;
+    private static final int SPECULATIVECAP = 1 << 24;
+    private final ByteBuffer data;
+    private final long size;
+    private final int numchunks;
+    private final DeflateDecoder decoder;
+    private final ExecutorService executor;
+    private final int maxpending;
+    // speculative results, by chunk index
+    private final TreeMap<Integer, Future<DeflateDecoder.Result>> pending = new TreeMap<Integer, Future<DeflateDecoder.Result>>();
+    private int nextsubmit = 1;
+    private int specchunk = -1;
+    private DeflateDecoder.Result spec = null;
+    // decoding state: bit position of the next block, window, member checks
+    private long position = 0;
+    private boolean inMember = false;
+    private final byte[] window = new byte[DeflateDecoder.WINDOWSIZE];
+    private int windowlen = 0;
+    private final CRC32 crc = new CRC32();
+    private long membersize = 0;
+    // decoded data waiting to be read
+    private byte[] piece = new byte[0];
+    private int piecelen = 0;
+    private int piecepos = 0;
+    private boolean endReached = false;
+    // counters describing how the data was decoded
+    private long numSpeculative = 0;
+    private long numSerial = 0;
+
+    /**
+     *
+     * @param f
+     *
+     * gzip file
+     *
+     * @param numthreads
+     *
+     * number of threads used for speculative decoding
+     *
+     * @throws IOException
+     */
+    public ParallelGzipCompressorInputStream(File f, int numthreads) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            size = raf.length();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large for parallel gzip decompression: " + f.getAbsolutePath());
+            }
+            data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+        numchunks = (int) ((size + CHUNKSIZE - 1) / CHUNKSIZE);
+        decoder = new DeflateDecoder(data);
+        numthreads = Math.max(1, numthreads);
+        executor = Executors.newFixedThreadPool(numthreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gzip-decompressor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        maxpending = numthreads * 2;
+        if (size < 2 || (data.get(0) & 0xff) != 31 || (data.get(1) & 0xff) != 139) {
+            close();
+            throw new IOException("Input is not in the .gz format");
+        }
+    }
+
+    /**
+     * parses a gzip member header
+     *
+     * @param offset
+     *
+     * byte offset of the header
+     *
+     * @return
+     *
+     * byte offset of the deflate data
+     */
+    private long readHeader(long offset) throws IOException {
+        if (offset + 10 > size) {
+            throw new EOFException();
+        }
+        if ((getByte(offset) != 31) || (getByte(offset + 1) != 139)) {
+            throw new IOException("Garbage after a valid .gz stream");
+        }
+        if (getByte(offset + 2) != 8) {
+            throw new IOException("Unsupported compression method " + getByte(offset + 2) + " in the .gz header");
+        }
+        int flg = getByte(offset + 3);
+        if ((flg & FRESERVED) != 0) {
+            throw new IOException("Reserved flags are set in the .gz header");
+        }
+        long pos = offset + 10;
+        if ((flg & FEXTRA) != 0) {
+            pos += 2 + (getByte(pos) | (getByte(pos + 1) << 8));
+        }
+        if ((flg & FNAME) != 0) {
+            while (getByte(pos) != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if ((flg & FCOMMENT) != 0) {
+            while (getByte(pos) != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if ((flg & FHCRC) != 0) {
+            pos += 2;
+        }
+        return pos;
+    }
+
+    private int getByte(long offset) throws EOFException {
+        if (offset >= size) {
+            throw new EOFException();
+        }
+        return data.get((int) offset) & 0xff;
+    }
+
+    /**
+     * obtains the speculative result for a chunk, and submits work for the
+     * following chunks
+     */
+    private DeflateDecoder.Result getSpeculative(int chunk) {
+        if (chunk != specchunk) {
+            specchunk = chunk;
+            spec = null;
+            // results for earlier chunks are no longer useful
+            Map<Integer, Future<DeflateDecoder.Result>> old = pending.headMap(chunk);
+            for (Future<DeflateDecoder.Result> f : old.values()) {
+                f.cancel(true);
+            }
+            old.clear();
+            Future<DeflateDecoder.Result> f = pending.remove(chunk);
+            if (f != null) {
+                try {
+                    spec = f.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    spec = null;
+                }
+            }
+            nextsubmit = Math.max(nextsubmit, chunk + 1);
+            while (pending.size() < maxpending && nextsubmit < numchunks) {
+                pending.put(nextsubmit, submit(nextsubmit));
+                nextsubmit++;
+            }
+        }
+        return spec;
+    }
+
+    private Future<DeflateDecoder.Result> submit(final int chunk) {
+        return executor.submit(new Callable<DeflateDecoder.Result>() {
+            @Override
+            public DeflateDecoder.Result call() {
+                return speculate(chunk);
+            }
+        });
+    }
+
+    /**
+     * searches a chunk for a block start and decodes from there (runs on a
+     * worker thread)
+     *
+     * @return
+     *
+     * decoded data, or null if no block start was found
+     */
+    private DeflateDecoder.Result speculate(int chunk) {
+        DeflateDecoder nowdecoder = new DeflateDecoder(data);
+        long startbit = (long) chunk * CHUNKSIZE * 8;
+        long endbit = Math.min(size, (long) (chunk + 1) * CHUNKSIZE) * 8;
+        for (long bit = startbit; bit < endbit; bit++) {
+            if ((bit & 4095) == 0 && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            if (nowdecoder.isCandidate(bit)) {
+                try {
+                    return nowdecoder.decode(bit, endbit, null, 0, SPECULATIVECAP);
+                } catch (DataFormatException ex) {
+                    // not a real block start, keep looking
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * decodes the next piece of data
+     *
+     * @return
+     *
+     * false at the end of the file
+     */
+    private boolean nextPiece() throws IOException {
+        while (true) {
+            if (!inMember) {
+                long offset = position >>> 3;
+                if (offset >= size) {
+                    return false;
+                }
+                position = readHeader(offset) << 3;
+                inMember = true;
+                windowlen = 0;
+                crc.reset();
+                membersize = 0;
+            }
+
+            int chunk = (int) ((position >>> 3) / CHUNKSIZE);
+            long chunkend = Math.min(size, (long) (chunk + 1) * CHUNKSIZE) << 3;
+            DeflateDecoder.Result nowspec = getSpeculative(chunk);
+            DeflateDecoder.Result result;
+            if (nowspec != null && nowspec.startbit == position) {
+                result = nowspec;
+                spec = null;
+                numSpeculative++;
+            } else {
+                if (nowspec != null && nowspec.startbit < position) {
+                    spec = null;
+                    nowspec = null;
+                }
+                // decode serially up to the next speculative result or chunk end
+                long stop = nowspec != null ? nowspec.startbit : chunkend;
+                try {
+                    result = decoder.decode(position, stop, window, windowlen, SERIALCAP);
+                } catch (DataFormatException ex) {
+                    throw new IOException("Gzip-compressed data is corrupt");
+                }
+                numSerial++;
+            }
+
+            emit(result);
+            position = result.endbit;
+            if (result.last) {
+                endMember();
+            }
+            if (piecelen > 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * converts decoded data into bytes and updates the window
+     */
+    private void emit(DeflateDecoder.Result result) {
+        int len = result.length;
+        if (piece.length < len) {
+            piece = new byte[Math.max(len, piece.length * 2)];
+        }
+        DeflateDecoder.resolve(result, window, piece);
+        piecelen = len;
+        piecepos = 0;
+        crc.update(piece, 0, len);
+        membersize += len;
+
+        int wsize = DeflateDecoder.WINDOWSIZE;
+        if (len >= wsize) {
+            System.arraycopy(piece, len - wsize, window, 0, wsize);
+        } else {
+            System.arraycopy(window, len, window, 0, wsize - len);
+            System.arraycopy(piece, 0, window, wsize - len, len);
+        }
+        windowlen = (int) Math.min(wsize, windowlen + (long) len);
+    }
+
+    /**
+     * checks the footer of a gzip member
+     */
+    private void endMember() throws IOException {
+        long offset = (position + 7) >>> 3;
+        if (offset + 8 > size) {
+            throw new EOFException();
+        }
+        long crcStored = 0;
+        for (int i = 0; i < 4; i++) {
+            crcStored |= (long) getByte(offset + i) << (i * 8);
+        }
+        if (crcStored != crc.getValue()) {
+            throw new IOException("Gzip-compressed data is corrupt (CRC32 error)");
+        }
+        long isize = 0;
+        for (int i = 0; i < 4; i++) {
+            isize |= (long) getByte(offset + 4 + i) << (i * 8);
+        }
+        if (isize != (membersize & 0xffffffffL)) {
+            throw new IOException("Gzip-compressed data is corrupt (uncompressed size mismatch)");
+        }
+        position = (offset + 8) << 3;
+        inMember = false;
+    }
+
+    private boolean ensureData() throws IOException {
+        if (piecepos < piecelen) {
+            return true;
+        }
+        if (endReached || !nextPiece()) {
+            endReached = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        count(1);
+        int ans = piece[piecepos] & 0xff;
+        piecepos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int total = 0;
+        while (len > 0 && ensureData()) {
+            int nowlen = Math.min(len, piecelen - piecepos);
+            System.arraycopy(piece, piecepos, b, off, nowlen);
+            piecepos += nowlen;
+            off += nowlen;
+            len -= nowlen;
+            total += nowlen;
+        }
+        count(total);
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return piecelen - piecepos;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of pieces of output that were taken from speculative decoding
+     */
+    public long getNumSpeculative() {
+        return numSpeculative;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of pieces of output that were decoded on the calling thread
+     */
+    public long getNumSerial() {
+        return numSerial;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pending.clear();
+        spec = null;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Stream that writes into another stream, or a channel, on a separate thread.
+ *
+ * Written data is collected in large buffers. Full buffers are handed to a
+ * writer thread, which passes them on to the destination. When the
+ * destination is a compressor, compression then runs in parallel with the
+ * code producing the data.
+ *
+ * The number of buffers is fixed. When the writer thread falls behind, write()
+ * waits for a free buffer, so memory use stays bounded. An error in the writer
+ * thread is thrown by the next write(), flush(), or close().
+ *
+ * @NotThreadSafe
+ * @author Tomasz Konopka
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    private static final int DEFAULTNUMBUFFERS = 4;
+    private static final int DEFAULTBUFSIZE = 1 << 20;
+    // destination is either a stream or a channel
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final int numbuffers;
+    // buffers move from free to filled (caller) and back (writer thread)
+    private final ArrayBlockingQueue<Chunk> free;
+    private final ArrayBlockingQueue<Chunk> filled;
+    private final Thread writer;
+    private Chunk current;
+    private boolean closed = false;
+    private volatile Throwable failure = null;
+
+    /**
+     * one buffer in the ring
+     */
+    private static class Chunk {
+
+        final byte[] data;
+        int len = 0;
+        // ask the writer thread to flush or close the destination after
+        // writing the data
+        boolean flush = false;
+        boolean close = false;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * creates a stream with default settings (four buffers of 1MB)
+     *
+     * @param out
+     *
+     * destination, used only by the writer thread
+     */
+    public AsyncOutputStream(OutputStream out) {
+        this(out, null, DEFAULTNUMBUFFERS, DEFAULTBUFSIZE);
+    }
+
+    /**
+     *
+     * @param out
+     *
+     * destination, used only by the writer thread
+     *
+     * @param numbuffers
+     *
+     * number of buffers (at least two)
+     *
+     * @param bufsize
+     *
+     * size of each buffer
+     */
+    public AsyncOutputStream(OutputStream out, int numbuffers, int bufsize) {
+        this(out, null, numbuffers, bufsize);
+    }
+
+    /**
+     * creates a stream writing into a channel with default settings. Buffers
+     * are written into the channel without further copies.
+     *
+     * @param channel
+     */
+    public AsyncOutputStream(WritableByteChannel channel) {
+        this(null, channel, DEFAULTNUMBUFFERS, DEFAULTBUFSIZE);
+    }
+
+    private AsyncOutputStream(OutputStream out, WritableByteChannel channel, int numbuffers, int bufsize) {
+        this.out = out;
+        this.channel = channel;
+        this.numbuffers = Math.max(2, numbuffers);
+        bufsize = Math.max(16, bufsize);
+        free = new ArrayBlockingQueue<Chunk>(this.numbuffers);
+        filled = new ArrayBlockingQueue<Chunk>(this.numbuffers);
+        for (int i = 1; i < this.numbuffers; i++) {
+            free.add(new Chunk(bufsize));
+        }
+        current = new Chunk(bufsize);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "async-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * passes filled buffers to the destination (runs on the writer thread)
+     */
+    private void consume() {
+        try {
+            boolean done = false;
+            while (!done) {
+                Chunk chunk = filled.take();
+                done = chunk.close;
+                // after an error, buffers are recycled without writing so
+                // that the caller does not block
+                if (failure == null) {
+                    try {
+                        writeChunk(chunk);
+                    } catch (Throwable ex) {
+                        failure = ex;
+                    }
+                }
+                if (chunk.close) {
+                    try {
+                        closeDestination();
+                    } catch (Throwable ex) {
+                        if (failure == null) {
+                            failure = ex;
+                        }
+                    }
+                }
+                chunk.len = 0;
+                chunk.flush = false;
+                free.put(chunk);
+            }
+        } catch (InterruptedException ex) {
+            failure = ex;
+        }
+    }
+
+    private void writeChunk(Chunk chunk) throws IOException {
+        if (channel != null) {
+            ByteBuffer bb = ByteBuffer.wrap(chunk.data, 0, chunk.len);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+        } else {
+            out.write(chunk.data, 0, chunk.len);
+            if (chunk.flush) {
+                out.flush();
+            }
+        }
+    }
+
+    private void closeDestination() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            out.close();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable ex = failure;
+        if (ex != null) {
+            if (ex instanceof IOException) {
+                throw (IOException) ex;
+            }
+            throw new IOException("Error in writer thread", ex);
+        }
+    }
+
+    /**
+     * sends the current buffer to the writer thread and takes a free one
+     */
+    private void handOff(boolean flush) throws IOException {
+        checkFailure();
+        current.flush = flush;
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer thread");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (current.len == current.data.length) {
+            handOff(false);
+        }
+        current.data[current.len] = (byte) b;
+        current.len++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (current.len == current.data.length) {
+                handOff(false);
+            }
+            int nowlen = Math.min(len, current.data.length - current.len);
+            System.arraycopy(b, off, current.data, current.len, nowlen);
+            current.len += nowlen;
+            off += nowlen;
+            len -= nowlen;
+        }
+    }
+
+    /**
+     * passes all written data to the destination, flushes the destination,
+     * and waits until this is done.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        handOff(true);
+        // once all other buffers are free, the writer thread is idle
+        Chunk[] held = new Chunk[numbuffers - 1];
+        try {
+            for (int i = 0; i < held.length; i++) {
+                held[i] = free.take();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer thread");
+        } finally {
+            for (Chunk chunk : held) {
+                if (chunk != null) {
+                    free.add(chunk);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * writes remaining data, closes the destination, and stops the writer
+     * thread.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.close = true;
+        try {
+            filled.put(current);
+            current = null;
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for writer thread");
+        }
+        checkFailure();
+    }
+}
@@ -16,7 +16,10 @@
 package jsequtils.file;
 
 import apachecommons.compressors.bzip2.BZip2CompressorInputStream;
+import apachecommons.compressors.bzip2.ParallelBZip2CompressorInputStream;
+import apachecommons.compressors.gzip.BGZFCompressorInputStream;
 import apachecommons.compressors.gzip.GzipCompressorInputStream;
+import apachecommons.compressors.gzip.ParallelBGZFCompressorInputStream;
 import java.io.*;
 
 /**
@@ -34,6 +37,16 @@ import java.io.*;
  */
 public final class BufferedReaderMaker {
 
+    // more threads than this rarely speed up decompression, as reading the
+    // decompressed data becomes the bottleneck
+    private static final int MAXGZIPTHREADS = 8;
+    private static final int MAXBZIP2THREADS = 16;
+    // compressed files smaller than this are decompressed on the calling
+    // thread; a pool of threads costs more than it saves on small files
+    private static final long MINPARALLELSIZE = 4L << 20;
+    // uncompressed files smaller than this are read without memory mapping
+    private static final long MINMAPPEDSIZE = 64L << 20;
+
     /**
      *
      * @param filename
@@ -105,40 +118,227 @@ public final class BufferedReaderMaker {
      * @throws IOException
      */
     public static BufferedReader makeBufferedReader(File f) throws IOException {
+        return makeBufferedReader(f, false);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * a file to read from
+     *
+     * @param readahead
+     *
+     * true to decompress gz, bgz, and bz2 files on a separate thread, so that
+     * decompression overlaps with processing of the lines. This has no effect
+     * on uncompressed files.
+     *
+     * @return
+     *
+     * a BufferedReader ready to read from the given file
+     *
+     * @throws IOException
+     */
+    public static BufferedReader makeBufferedReader(File f, boolean readahead) throws IOException {
         if (f == null) {
             return new BufferedReader(new InputStreamReader(System.in));
         }
+        return new BufferedReader(new InputStreamReader(makeFileInputStream(f, readahead)));
+    }
 
-        String fextension = FileExtensionGetter.getExtension(f);
-        if (fextension == null) {
-            return new BufferedReader(new FileReader(f));
-        } else {
-            if (fextension.equals("gz")) {
-                return new BufferedReader(new InputStreamReader(new GzipCompressorInputStream(new FileInputStream(f), true)));
-            } else if (fextension.equals("bz2")) {
-                return new BufferedReader(new InputStreamReader(new BZip2CompressorInputStream(new FileInputStream(f), true)));
-            } else {
-                return new BufferedReader(new FileReader(f));
-            }
+    /**
+     *
+     * @param filename
+     *
+     * name of file to read from, or "stdin"
+     *
+     * @return
+     *
+     * a ByteLineReader ready to read lines from the given file, decompressing
+     * the file if it has a gz, bgz, or bz2 extension
+     *
+     * @throws IOException
+     */
+    public static ByteLineReader makeByteLineReader(String filename) throws IOException {
+        if (filename == null || filename.equals("stdin")) {
+            return new ByteLineReader(System.in);
         }
+        return makeByteLineReader(new File(filename));
     }
-    
-    public static FileWithHeaderReader makeFileWHeaderReader(File f, String headerdef) throws IOException {
+
+    /**
+     *
+     * @param f
+     *
+     * a file to read from
+     *
+     * @return
+     *
+     * a ByteLineReader ready to read lines from the given file. Plain files
+     * are memory-mapped, compressed files are read through a decompressing
+     * stream.
+     *
+     * @throws IOException
+     */
+    public static ByteLineReader makeByteLineReader(File f) throws IOException {
+        return makeByteLineReader(f, false);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * a file to read from
+     *
+     * @param readahead
+     *
+     * true to decompress compressed files on a separate thread
+     *
+     * @return
+     *
+     * a ByteLineReader ready to read lines from the given file
+     *
+     * @throws IOException
+     */
+    public static ByteLineReader makeByteLineReader(File f, boolean readahead) throws IOException {
         if (f == null) {
-            return new FileWithHeaderReader(new InputStreamReader(System.in), headerdef);
+            return new ByteLineReader(System.in);
         }
+        return new ByteLineReader(makeFileInputStream(f, readahead));
+    }
 
+    /**
+     *
+     * @param f
+     *
+     * a file to read from
+     *
+     * @return
+     *
+     * a stream of bytes from the file, decompressed if the file has a gz, bgz,
+     * or bz2 extension. The stream is not buffered.
+     *
+     * @throws IOException
+     */
+    public static InputStream makeInputStream(File f) throws IOException {
+        if (f == null) {
+            return System.in;
+        }
+        return makeFileInputStream(f, false);
+    }
+
+    /**
+     * creates a stream of bytes from a file, choosing the decompressor by
+     * the extension of the file
+     *
+     * @param f
+     * @param readahead
+     *
+     * true to wrap decompressing streams in a ReadAheadInputStream
+     *
+     * @return
+     * @throws IOException
+     */
+    private static InputStream makeFileInputStream(File f, boolean readahead) throws IOException {
         String fextension = FileExtensionGetter.getExtension(f);
-        if (fextension == null) {
-            return new FileWithHeaderReader(new FileReader(f), headerdef);
+        InputStream is;
+        if ("gz".equals(fextension) || "bgz".equals(fextension)) {
+            is = makeGzipInputStream(f);
+        } else if ("bz2".equals(fextension)) {
+            is = makeBZip2InputStream(f);
         } else {
-            if (fextension.equals("gz")) {
-                return new FileWithHeaderReader(new InputStreamReader(new GzipCompressorInputStream(new FileInputStream(f), true)), headerdef);
-            } else if (fextension.equals("bz2")) {
-                return new FileWithHeaderReader(new InputStreamReader(new BZip2CompressorInputStream(new FileInputStream(f), true)), headerdef);
-            } else {
-                return new FileWithHeaderReader(new FileReader(f), headerdef);
+            return makePlainInputStream(f);
+        }
+        return readahead ? new ReadAheadInputStream(is) : is;
+    }
+
+    /**
+     * creates a stream for an uncompressed file. Large regular files are
+     * memory-mapped, which avoids a read system call and a copy for every
+     * buffer of data. Other files are read as usual: small files gain little
+     * from a mapping, and mappings are only released at garbage collection
+     * (until then they use address space and, on some systems, keep the file
+     * locked). Named pipes cannot be mapped at all.
+     *
+     * @param f
+     * @return
+     * @throws IOException
+     */
+    private static InputStream makePlainInputStream(File f) throws IOException {
+        if (f.isFile() && f.length() >= MINMAPPEDSIZE) {
+            return new MappedInputStream(f);
+        }
+        return new FileInputStream(f);
+    }
+
+    /**
+     * creates a decompressing stream for a gzip file. Large BGZF files are
+     * decompressed block by block using several threads (when more than one
+     * processor is available). Other gzip files, including files with several
+     * concatenated members, are decompressed serially because the boundaries
+     * between members are not known until the data is inflated. Streams that
+     * are not regular files, e.g. named pipes, are not checked for BGZF
+     * because the bytes read by the check could not be read again.
+     *
+     * @param f
+     * @return
+     * @throws IOException
+     */
+    private static InputStream makeGzipInputStream(File f) throws IOException {
+        if (f.isFile() && BGZFCompressorInputStream.isBGZF(f)) {
+            int numthreads = Math.min(MAXGZIPTHREADS, Runtime.getRuntime().availableProcessors());
+            if (numthreads > 1 && f.length() >= MINPARALLELSIZE) {
+                InputStream fis = new BufferedInputStream(new FileInputStream(f), 1 << 18);
+                return new ParallelBGZFCompressorInputStream(fis, numthreads);
             }
+            // reads whole blocks from the file into pooled buffers
+            return new BGZFCompressorInputStream(f);
+        }
+        return new GzipCompressorInputStream(new FileInputStream(f), true);
+    }
+
+    /**
+     * creates a decompressing stream for a bzip2 file. Blocks of large files
+     * are decoded on several threads when more than one processor is
+     * available. Small files hold only a few blocks and are decoded serially.
+     *
+     * @param f
+     * @return
+     * @throws IOException
+     */
+    private static InputStream makeBZip2InputStream(File f) throws IOException {
+        int numthreads = Math.min(MAXBZIP2THREADS, Runtime.getRuntime().availableProcessors());
+        if (numthreads > 1 && f.length() >= MINPARALLELSIZE) {
+            return new ParallelBZip2CompressorInputStream(new FileInputStream(f), numthreads);
+        }
+        return new BZip2CompressorInputStream(new BufferedInputStream(new FileInputStream(f)), true);
+    }
+
+    public static FileWithHeaderReader makeFileWHeaderReader(File f, String headerdef) throws IOException {
+        return makeFileWHeaderReader(f, headerdef, false);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * a file to read from
+     *
+     * @param headerdef
+     *
+     * string that marks header lines
+     *
+     * @param readahead
+     *
+     * true to decompress compressed files on a separate thread
+     *
+     * @return
+     * @throws IOException
+     */
+    public static FileWithHeaderReader makeFileWHeaderReader(File f, String headerdef, boolean readahead) throws IOException {
+        if (f == null) {
+            return new FileWithHeaderReader(new InputStreamReader(System.in), headerdef);
         }
+        return new FileWithHeaderReader(new InputStreamReader(makeFileInputStream(f, readahead)), headerdef);
     }
 }
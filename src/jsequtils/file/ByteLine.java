@@ -0,0 +1,369 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A line of text held as a range of bytes in a buffer.
+ *
+ * Objects of this class are handed out by ByteLineReader and are reused from
+ * one line to the next, so the contents are only valid until the next line is
+ * read. Use toString() to keep a copy.
+ *
+ * Characters are the bytes of the line, i.e. the view is suitable for ASCII
+ * data. toString() decodes the bytes as UTF-8.
+ *
+ * The line can be split into fields with tokenize(). The fields are then
+ * available by index without creating strings.
+ *
+ * @author Tomasz Konopka
+ */
+public final class ByteLine implements CharSequence {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private byte[] buf;
+    private int start, end;
+    // boundaries of fields: field i spans [fieldstarts[i], fieldends[i])
+    private int[] fieldstarts = new int[16];
+    private int[] fieldends = new int[16];
+    private int numfields = 0;
+
+    ByteLine() {
+        this.buf = new byte[0];
+    }
+
+    /**
+     * creates a view on a range of bytes
+     *
+     * @param buf
+     * @param start
+     * @param end
+     */
+    public ByteLine(byte[] buf, int start, int end) {
+        set(buf, start, end);
+    }
+
+    /**
+     * moves the view to a new range of bytes
+     *
+     * @param buf
+     * @param start
+     *
+     * index of first byte in the line
+     *
+     * @param end
+     *
+     * index after the last byte in the line
+     */
+    void set(byte[] buf, int start, int end) {
+        this.buf = buf;
+        this.start = start;
+        this.end = end;
+        this.numfields = 0;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * the underlying buffer. The line occupies positions getStart() to
+     * getEnd()-1.
+     */
+    public byte[] getBytes() {
+        return buf;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return end == start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of line of length " + (end - start));
+        }
+        return (char) (buf[start + index] & 0xff);
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *
+     * the byte at a position in the line
+     */
+    public byte byteAt(int index) {
+        return buf[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > end - start || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + "-" + to + " out of line of length " + (end - start));
+        }
+        return toString(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, start, end - start, UTF8);
+    }
+
+    /**
+     *
+     * @param from
+     * @param to
+     * @return
+     *
+     * a part of the line as a string
+     */
+    public String toString(int from, int to) {
+        return new String(buf, start + from, to - from, UTF8);
+    }
+
+    /**
+     *
+     * @param prefix
+     * @return
+     *
+     * true if the line starts with the prefix (compared char by byte, so
+     * meant for ASCII prefixes)
+     */
+    public boolean startsWith(String prefix) {
+        int plen = prefix.length();
+        if (plen > end - start) {
+            return false;
+        }
+        for (int i = 0; i < plen; i++) {
+            if ((buf[start + i] & 0xff) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param c
+     * @param from
+     * @return
+     *
+     * position of the first occurrence of c at or after from, or -1
+     */
+    public int indexOf(char c, int from) {
+        byte b = (byte) c;
+        for (int i = start + Math.max(from, 0); i < end; i++) {
+            if (buf[i] == b) {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * splits the line into fields
+     *
+     * @param separator
+     *
+     * character separating fields, e.g. tab
+     *
+     * @return
+     *
+     * number of fields (an empty line has one empty field)
+     */
+    public int tokenize(char separator) {
+        return tokenize(separator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * splits the beginning of the line into fields. This avoids scanning
+     * the whole line when only the first few fields are needed.
+     *
+     * @param separator
+     *
+     * character separating fields, e.g. tab
+     *
+     * @param maxfields
+     *
+     * maximal number of fields; the last field then holds the rest of the
+     * line, as with String.split(regex, limit)
+     *
+     * @return
+     *
+     * number of fields
+     */
+    public int tokenize(char separator, int maxfields) {
+        byte sep = (byte) separator;
+        int nowstart = start;
+        numfields = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || (buf[i] == sep && numfields < maxfields - 1)) {
+                if (numfields == fieldstarts.length) {
+                    fieldstarts = Arrays.copyOf(fieldstarts, numfields * 2);
+                    fieldends = Arrays.copyOf(fieldends, numfields * 2);
+                }
+                fieldstarts[numfields] = nowstart - start;
+                fieldends[numfields] = i - start;
+                numfields++;
+                nowstart = i + 1;
+            }
+        }
+        return numfields;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of fields found by the last call to tokenize()
+     */
+    public int getNumFields() {
+        return numfields;
+    }
+
+    /**
+     *
+     * @param field
+     * @return
+     *
+     * position of the first char of a field (relative to the line)
+     */
+    public int getFieldStart(int field) {
+        checkField(field);
+        return fieldstarts[field];
+    }
+
+    /**
+     *
+     * @param field
+     * @return
+     *
+     * position after the last char of a field (relative to the line)
+     */
+    public int getFieldEnd(int field) {
+        checkField(field);
+        return fieldends[field];
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return fieldends[field] - fieldstarts[field];
+    }
+
+    public String getField(int field) {
+        checkField(field);
+        return toString(fieldstarts[field], fieldends[field]);
+    }
+
+    public int getFieldInt(int field) {
+        checkField(field);
+        return parseInt(fieldstarts[field], fieldends[field]);
+    }
+
+    public long getFieldLong(int field) {
+        checkField(field);
+        return parseLong(fieldstarts[field], fieldends[field]);
+    }
+
+    /**
+     *
+     * @param field
+     * @param s
+     * @return
+     *
+     * true if the field holds exactly the string s
+     */
+    public boolean fieldEquals(int field, String s) {
+        checkField(field);
+        int from = fieldstarts[field];
+        int len = fieldends[field] - from;
+        if (len != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if ((buf[start + from + i] & 0xff) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= numfields) {
+            throw new IndexOutOfBoundsException("Field " + field + " not available, line has " + numfields + " fields");
+        }
+    }
+
+    /**
+     * parses an integer from part of the line without creating a string.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public int parseInt(int from, int to) {
+        long ans = parseLong(from, to);
+        if (ans < Integer.MIN_VALUE || ans > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + toString(from, to) + "\"");
+        }
+        return (int) ans;
+    }
+
+    /**
+     * parses a long integer from part of the line. Unusual numbers (empty,
+     * very long, or with characters other than digits and a leading sign) are
+     * passed on to Long.parseLong.
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public long parseLong(int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[start + i] == '-' || buf[start + i] == '+')) {
+            negative = buf[start + i] == '-';
+            i++;
+        }
+        if (i >= to || to - i > 18) {
+            return Long.parseLong(toString(from, to));
+        }
+        long ans = 0;
+        for (; i < to; i++) {
+            int digit = buf[start + i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(toString(from, to));
+            }
+            ans = (ans * 10) + digit;
+        }
+        return negative ? -ans : ans;
+    }
+}
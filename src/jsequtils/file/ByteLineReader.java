@@ -0,0 +1,200 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Reader of lines of text that works on bytes.
+ *
+ * Unlike BufferedReader.readLine(), this reader does not decode characters and
+ * does not create a String for each line. readLine() returns a view on the
+ * internal buffer (a ByteLine), and the same view object is reused for all
+ * lines. The contents of a line are therefore only valid until the next call
+ * to readLine().
+ *
+ * Lines end with '\n'. A '\r' before the '\n' is removed, so files with
+ * Windows line endings give the same lines as with BufferedReader. The last
+ * line of the input may lack a newline.
+ *
+ * @author Tomasz Konopka
+ */
+public class ByteLineReader implements Closeable {
+
+    private static final int DEFAULTBUFSIZE = 1 << 16;
+    // input is either a stream or a channel
+    private final InputStream stream;
+    private final ReadableByteChannel channel;
+    private byte[] buf;
+    private ByteBuffer bytebuf;
+    // unread data occupies buf[bufpos, buflen)
+    private int bufpos = 0, buflen = 0;
+    private boolean eof = false;
+    // offset in the input of buf[0]
+    private long bufoffset = 0;
+    private long lineoffset = 0;
+    private final ByteLine line = new ByteLine();
+
+    /**
+     * creates a reader over a stream of bytes
+     *
+     * @param stream
+     *
+     * stream with text content (already decompressed)
+     */
+    public ByteLineReader(InputStream stream) {
+        this(stream, DEFAULTBUFSIZE);
+    }
+
+    /**
+     * creates a reader over a stream of bytes
+     *
+     * @param stream
+     * @param bufsize
+     *
+     * initial size of the buffer (the buffer grows to hold long lines)
+     */
+    public ByteLineReader(InputStream stream, int bufsize) {
+        this.stream = stream;
+        this.channel = null;
+        this.buf = new byte[Math.max(bufsize, 16)];
+    }
+
+    /**
+     * creates a reader over a channel
+     *
+     * @param channel
+     */
+    public ByteLineReader(ReadableByteChannel channel) {
+        this.stream = null;
+        this.channel = channel;
+        this.buf = new byte[DEFAULTBUFSIZE];
+        this.bytebuf = ByteBuffer.wrap(buf);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * the next line, without the line terminator, or null at the end of the
+     * input. The returned object is reused by the next call.
+     *
+     * @throws IOException
+     */
+    public ByteLine readLine() throws IOException {
+        int scanfrom = bufpos;
+        while (true) {
+            for (int i = scanfrom; i < buflen; i++) {
+                if (buf[i] == '\n') {
+                    setLine(bufpos, i);
+                    bufpos = i + 1;
+                    return line;
+                }
+            }
+            // no newline in the buffer, get more data (fill moves the
+            // unread data to the start of the buffer)
+            scanfrom = buflen - bufpos;
+            if (!fill()) {
+                if (bufpos < buflen) {
+                    setLine(bufpos, buflen);
+                    bufpos = buflen;
+                    return line;
+                }
+                return null;
+            }
+        }
+    }
+
+    private void setLine(int from, int to) {
+        lineoffset = bufoffset + from;
+        if (to > from && buf[to - 1] == '\r') {
+            to--;
+        }
+        line.set(buf, from, to);
+    }
+
+    /**
+     * moves unread data to the start of the buffer (growing the buffer if it
+     * is full) and reads more data after it.
+     *
+     * @return
+     *
+     * true if some data was read
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int remaining = buflen - bufpos;
+        if (bufpos > 0) {
+            System.arraycopy(buf, bufpos, buf, 0, remaining);
+            bufoffset += bufpos;
+        } else if (remaining == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            if (channel != null) {
+                bytebuf = ByteBuffer.wrap(buf);
+            }
+        }
+        bufpos = 0;
+        buflen = remaining;
+
+        int nowread;
+        if (channel != null) {
+            bytebuf.limit(buf.length);
+            bytebuf.position(buflen);
+            nowread = channel.read(bytebuf);
+            while (nowread == 0) {
+                nowread = channel.read(bytebuf);
+            }
+        } else {
+            nowread = stream.read(buf, buflen, buf.length - buflen);
+            while (nowread == 0) {
+                nowread = stream.read(buf, buflen, buf.length - buflen);
+            }
+        }
+        if (nowread < 0) {
+            eof = true;
+            return false;
+        }
+        buflen += nowread;
+        return true;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * position in the input of the first byte of the line last returned by
+     * readLine()
+     */
+    public long getLineOffset() {
+        return lineoffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else if (stream != System.in) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Read-only memory-mapped view of an uncompressed file.
+ *
+ * A single mapping cannot exceed 2GB, so the file is covered by a series of
+ * windows. Windows end at line boundaries (just after a '\n'), so a line of
+ * text always lies within one window unless the line is longer than a whole
+ * window. Windows are mapped when first requested and are then shared by all
+ * users of the object, e.g. by several threads parsing different parts of
+ * the file. The buffers handed out are independent views, so each thread can
+ * move its own position without affecting the others.
+ *
+ * Note that java does not provide a way to unmap a buffer. close() releases
+ * the file handle, and the mappings are released when the buffers are
+ * garbage collected.
+ *
+ * @author Tomasz Konopka
+ */
+public class MappedFile implements Closeable {
+
+    // default window size, well below the 2GB limit of a single mapping
+    public static final long DEFAULTWINDOWSIZE = 1L << 30;
+    private final FileInputStream fis;
+    private final FileChannel channel;
+    private final long size;
+    // window i spans [windowstarts[i], windowstarts[i+1])
+    private final long[] windowstarts;
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * maps a file using windows of the default size
+     *
+     * @param f
+     * @throws IOException
+     */
+    public MappedFile(File f) throws IOException {
+        this(f, DEFAULTWINDOWSIZE);
+    }
+
+    /**
+     * maps a file
+     *
+     * @param f
+     * @param windowsize
+     *
+     * maximal size of a window, at most Integer.MAX_VALUE
+     *
+     * @throws IOException
+     */
+    public MappedFile(File f, long windowsize) throws IOException {
+        if (windowsize < 1 || windowsize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid window size: " + windowsize);
+        }
+        fis = new FileInputStream(f);
+        channel = fis.getChannel();
+        try {
+            size = channel.size();
+            windowstarts = findWindowStarts(windowsize);
+        } catch (IOException ex) {
+            fis.close();
+            throw ex;
+        }
+        windows = new MappedByteBuffer[windowstarts.length - 1];
+    }
+
+    /**
+     * splits the file into windows that end at line boundaries
+     */
+    private long[] findWindowStarts(long windowsize) throws IOException {
+        ArrayList<Long> starts = new ArrayList<Long>();
+        long nowstart = 0;
+        starts.add(nowstart);
+        while (nowstart < size) {
+            long nowend = nowstart + windowsize;
+            if (nowend < size) {
+                // a window that is a single long line is cut at full size
+                long linestart = findLineStartBefore(nowstart, nowend);
+                if (linestart > nowstart) {
+                    nowend = linestart;
+                }
+            } else {
+                nowend = size;
+            }
+            starts.add(nowend);
+            nowstart = nowend;
+        }
+        long[] ans = new long[starts.size()];
+        for (int i = 0; i < ans.length; i++) {
+            ans[i] = starts.get(i);
+        }
+        return ans;
+    }
+
+    /**
+     *
+     * @param from
+     * @param to
+     * @return
+     *
+     * position just after the last '\n' in [from, to), or from if there is
+     * no newline in that range
+     */
+    private long findLineStartBefore(long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long blockend = to;
+        while (blockend > from) {
+            long blockstart = Math.max(from, blockend - buf.capacity());
+            buf.clear();
+            buf.limit((int) (blockend - blockstart));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, blockstart + buf.position()) < 0) {
+                    throw new IOException("File changed size while mapping");
+                }
+            }
+            for (int i = buf.position() - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') {
+                    return blockstart + i + 1;
+                }
+            }
+            blockend = blockstart;
+        }
+        return from;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * size of the file in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of windows covering the file (zero for an empty file)
+     */
+    public int getNumWindows() {
+        return windows.length;
+    }
+
+    /**
+     *
+     * @param i
+     * @return
+     *
+     * offset in the file of the first byte of window i
+     */
+    public long getWindowStart(int i) {
+        return windowstarts[i];
+    }
+
+    /**
+     *
+     * @param i
+     * @return
+     *
+     * offset in the file just after the last byte of window i
+     */
+    public long getWindowEnd(int i) {
+        return windowstarts[i + 1];
+    }
+
+    /**
+     *
+     * @param offset
+     *
+     * position in the file
+     *
+     * @return
+     *
+     * index of the window holding the offset
+     */
+    public int findWindow(long offset) {
+        if (offset < 0 || offset >= size) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside file of size " + size);
+        }
+        int ans = Arrays.binarySearch(windowstarts, offset);
+        return ans >= 0 ? ans : -ans - 2;
+    }
+
+    /**
+     *
+     * @param i
+     * @return
+     *
+     * a view on window i. The view starts at position 0 and is independent
+     * of other views on the same window.
+     *
+     * @throws IOException
+     */
+    public ByteBuffer getWindow(int i) throws IOException {
+        return getMapping(i).duplicate();
+    }
+
+    private synchronized MappedByteBuffer getMapping(int i) throws IOException {
+        if (windows[i] == null) {
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, windowstarts[i], windowstarts[i + 1] - windowstarts[i]);
+        }
+        return windows[i];
+    }
+
+    /**
+     *
+     * @param start
+     * @param end
+     * @return
+     *
+     * a view on the bytes [start, end) of the file. When the range lies in a
+     * single window, the view shares the mapped memory. Otherwise, the bytes
+     * are copied into a new buffer.
+     *
+     * @throws IOException
+     */
+    public ByteBuffer slice(long start, long end) throws IOException {
+        if (start < 0 || end > size || start > end || end - start > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ") in file of size " + size);
+        }
+        if (start == end) {
+            return ByteBuffer.allocate(0);
+        }
+        int w = findWindow(start);
+        if (end <= windowstarts[w + 1]) {
+            ByteBuffer view = getWindow(w);
+            view.position((int) (start - windowstarts[w]));
+            view.limit((int) (end - windowstarts[w]));
+            return view.slice();
+        }
+        ByteBuffer ans = ByteBuffer.allocate((int) (end - start));
+        long offset = start;
+        while (ans.hasRemaining()) {
+            ByteBuffer view = getWindow(w);
+            view.position((int) (offset - windowstarts[w]));
+            view.limit(Math.min(view.capacity(), view.position() + ans.remaining()));
+            offset += view.remaining();
+            ans.put(view);
+            w++;
+        }
+        ans.flip();
+        return ans;
+    }
+
+    /**
+     * splits a part of the file into ranges for parallel parsing. Each range
+     * starts at a line boundary and lies in a single window, so slice() on a
+     * range never copies data (except for lines longer than a window).
+     *
+     * @param start
+     *
+     * position where the first range starts (should be at a line boundary)
+     *
+     * @param numchunks
+     *
+     * desired number of ranges; the result can have more ranges if the file
+     * spans several windows, or fewer if the file is small
+     *
+     * @return
+     *
+     * array of boundaries; range i spans [bounds[i], bounds[i+1])
+     *
+     * @throws IOException
+     */
+    public long[] splitLines(long start, int numchunks) throws IOException {
+        if (start >= size) {
+            return new long[]{start, start};
+        }
+        long chunksize = Math.max(1, (size - start) / Math.max(1, numchunks));
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(start);
+        for (int w = findWindow(start); w < windows.length; w++) {
+            long wstart = Math.max(start, windowstarts[w]);
+            long wend = windowstarts[w + 1];
+            ByteBuffer view = null;
+            long nowbound = wstart + chunksize;
+            while (nowbound < wend) {
+                // move the tentative boundary to just after the next newline
+                if (view == null) {
+                    view = getWindow(w);
+                }
+                int pos = (int) (nowbound - windowstarts[w]);
+                int limit = view.limit();
+                while (pos < limit && view.get(pos) != '\n') {
+                    pos++;
+                }
+                nowbound = windowstarts[w] + pos + 1;
+                if (nowbound >= wend) {
+                    break;
+                }
+                bounds.add(nowbound);
+                nowbound += chunksize;
+            }
+            bounds.add(wend);
+        }
+        long[] ans = new long[bounds.size()];
+        for (int i = 0; i < ans.length; i++) {
+            ans[i] = bounds.get(i);
+        }
+        return ans;
+    }
+
+    /**
+     * releases the file handle. Views obtained earlier remain readable.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        fis.close();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream of bytes from a memory-mapped file, or from a part of one.
+ *
+ * Reads copy data straight from the mapped memory into the caller's array,
+ * without going through read system calls. The windows of a MappedFile are
+ * read one after the other, so files larger than 2GB are supported.
+ *
+ * @author Tomasz Konopka
+ */
+public class MappedInputStream extends InputStream {
+
+    private final MappedFile mapped;
+    // whether the mapped file was opened by this stream (and is closed by it)
+    private final boolean ownsmapped;
+    private int nextwindow = 0;
+    private ByteBuffer current;
+
+    /**
+     * creates a stream over a whole file
+     *
+     * @param f
+     * @throws IOException
+     */
+    public MappedInputStream(File f) throws IOException {
+        this(new MappedFile(f), true);
+    }
+
+    /**
+     * creates a stream over all the windows of a mapped file
+     *
+     * @param mapped
+     */
+    public MappedInputStream(MappedFile mapped) {
+        this(mapped, false);
+    }
+
+    private MappedInputStream(MappedFile mapped, boolean ownsmapped) {
+        this.mapped = mapped;
+        this.ownsmapped = ownsmapped;
+        this.current = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * creates a stream over a buffer, e.g. a range obtained from
+     * MappedFile.slice()
+     *
+     * @param buf
+     *
+     * buffer; the stream reads from its position to its limit
+     */
+    public MappedInputStream(ByteBuffer buf) {
+        this.mapped = null;
+        this.ownsmapped = false;
+        this.current = buf.duplicate();
+    }
+
+    /**
+     * makes sure the current buffer has data, moving to the next window if
+     * needed
+     *
+     * @return
+     *
+     * false at the end of the stream
+     */
+    private boolean ensureData() throws IOException {
+        while (!current.hasRemaining()) {
+            if (mapped == null || nextwindow >= mapped.getNumWindows()) {
+                return false;
+            }
+            current = mapped.getWindow(nextwindow);
+            nextwindow++;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int nowread = Math.min(len, current.remaining());
+        current.get(b, off, nowread);
+        return nowread;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && ensureData()) {
+            int nowskip = (int) Math.min(n - skipped, current.remaining());
+            current.position(current.position() + nowskip);
+            skipped += nowskip;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        current = ByteBuffer.allocate(0);
+        nextwindow = Integer.MAX_VALUE;
+        if (ownsmapped) {
+            mapped.close();
+        }
+    }
+}
@@ -16,8 +16,9 @@
 package jsequtils.file;
 
 import apachecommons.compressors.bzip2.BZip2CompressorOutputStream;
+import apachecommons.compressors.gzip.BGZFCompressorOutputStream;
+import apachecommons.compressors.gzip.GzipCompressorOutputStream;
 import java.io.*;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * A maker of various output streams.
@@ -65,6 +66,41 @@ public class OutputStreamMaker {
         return makeOutputStream(new File(directory, filename));
     }
 
+    /**
+     * creates an appropriate outputstream based on the filename, using several
+     * threads for compression when the format allows it.
+     *
+     * @param filename
+     * @param numthreads
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static OutputStream makeOutputStream(String filename, int numthreads) throws FileNotFoundException, IOException {
+        if (filename.equals("stdout")) {
+            return System.out;
+        }
+        return makeOutputStream(new File(filename), numthreads);
+    }
+
+    /**
+     * creates an appropriate outputstream based on the filename, optionally
+     * compressing and writing on a background thread.
+     *
+     * @param filename
+     * @param numthreads
+     * @param async
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static OutputStream makeOutputStream(String filename, int numthreads, boolean async) throws FileNotFoundException, IOException {
+        if (filename.equals("stdout")) {
+            return makeOutputStream((File) null, numthreads, async);
+        }
+        return makeOutputStream(new File(filename), numthreads, async);
+    }
+
     /**
      *
      * @param f
@@ -73,7 +109,102 @@ public class OutputStreamMaker {
      * @throws IOException
      */
     public static OutputStream makeOutputStream(File f) throws FileNotFoundException, IOException {
+        return makeOutputStream(f, 1);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * file to write into. Files with extension bgz are written in blocked
+     * gzip (BGZF) format. Files with extension gz are written as BGZF when
+     * numthreads is larger than one, and as a single gzip member otherwise.
+     * Both are readable by gzip. Files with extension bz2 are compressed
+     * block by block on several threads when numthreads is larger than one.
+     *
+     * @param numthreads
+     *
+     * number of threads used for compression
+     *
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static OutputStream makeOutputStream(File f, int numthreads) throws FileNotFoundException, IOException {
+        return makeOutputStream(f, numthreads, false);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * file to write into, or null for standard output. The format is chosen
+     * by the extension as in makeOutputStream(File, int).
+     *
+     * @param numthreads
+     *
+     * number of threads used for compression
+     *
+     * @param async
+     *
+     * true to collect written data in large buffers and to pass them to a
+     * background thread, which compresses them (if needed) and writes them
+     * out. Uncompressed data and standard output are then written through
+     * a channel.
+     *
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static OutputStream makeOutputStream(File f, int numthreads, boolean async) throws FileNotFoundException, IOException {
+        return makeOutputStream(f, numthreads, async, false);
+    }
+
+    /**
+     *
+     * @param f
+     *
+     * file to write into, or null for standard output. The format is chosen
+     * by the extension as in makeOutputStream(File, int).
+     *
+     * @param numthreads
+     *
+     * number of threads used for compression
+     *
+     * @param async
+     *
+     * true to compress and write on a background thread, as in
+     * makeOutputStream(File, int, boolean)
+     *
+     * @param blocked
+     *
+     * true to write files with extension gz in BGZF format regardless of the
+     * number of threads. BGZF files allow random access (e.g. by RleReader),
+     * which plain gzip files do not.
+     *
+     * @return
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public static OutputStream makeOutputStream(File f, int numthreads, boolean async, boolean blocked) throws FileNotFoundException, IOException {
+        if (!async) {
+            return makeSyncOutputStream(f, numthreads, blocked);
+        }
+
+        if (f == null) {
+            // data already in System.out must come before the new output
+            System.out.flush();
+            return new AsyncOutputStream(new FileOutputStream(FileDescriptor.out).getChannel());
+        }
+
+        String fextension = FileExtensionGetter.getExtension(f);
+        if ("bgz".equals(fextension) || "gz".equals(fextension) || "bz2".equals(fextension)) {
+            return new AsyncOutputStream(makeSyncOutputStream(f, numthreads, blocked));
+        }
+        return new AsyncOutputStream(new FileOutputStream(f).getChannel());
+    }
 
+    private static OutputStream makeSyncOutputStream(File f, int numthreads, boolean blocked) throws FileNotFoundException, IOException {
         if (f == null) {
             return System.out;
         }
@@ -82,10 +213,13 @@ public class OutputStreamMaker {
         if (fextension == null) {
             return new BufferedOutputStream(new FileOutputStream(f));
         } else {
-            if (fextension.equals("gz")) {
-                return new GZIPOutputStream(new FileOutputStream(f));
+            if (fextension.equals("bgz") || (fextension.equals("gz") && (blocked || numthreads > 1))) {
+                return new BGZFCompressorOutputStream(new FileOutputStream(f), numthreads);
+            } else if (fextension.equals("gz")) {
+                return new GzipCompressorOutputStream(new FileOutputStream(f));
             } else if (fextension.equals("bz2")) {
-                return new BZip2CompressorOutputStream(new FileOutputStream(f));
+                return new BZip2CompressorOutputStream(new BufferedOutputStream(new FileOutputStream(f)),
+                        BZip2CompressorOutputStream.MAX_BLOCKSIZE, numthreads);
             } else {
                 return new BufferedOutputStream(new FileOutputStream(f));
             }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Stream that reads from another stream on a separate thread.
+ *
+ * A producer thread reads from the underlying stream into a ring of large
+ * buffers, and the reading thread consumes the filled buffers. When the
+ * underlying stream is a decompressor, decompression then runs in parallel
+ * with whatever the reading thread does with the data, e.g. parsing.
+ *
+ * The number of buffers is fixed, so the producer waits when the consumer
+ * falls behind and memory use does not depend on the size of the input.
+ * Errors in the producer are passed on to the consumer and thrown by the
+ * next read().
+ *
+ * @author Tomasz Konopka
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final int DEFAULTNUMBUFFERS = 4;
+    private static final int DEFAULTBUFSIZE = 1 << 20;
+    private static final int READSIZE = 1 << 16;
+    private final InputStream in;
+    // buffers move from free to filled (producer) and back (consumer)
+    private final ArrayBlockingQueue<Chunk> free;
+    private final ArrayBlockingQueue<Chunk> filled;
+    private final Thread producer;
+    private Chunk current = null;
+    private int pos = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+    // error from the producer, thrown once the data before it is consumed
+    private IOException failure = null;
+
+    /**
+     * one buffer in the ring
+     */
+    private static class Chunk {
+
+        final byte[] data;
+        int len = 0;
+        // set on the chunk that ends the input
+        boolean last = false;
+        Throwable error = null;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * starts reading ahead with default settings (four buffers of 1MB)
+     *
+     * @param in
+     */
+    public ReadAheadInputStream(InputStream in) {
+        this(in, DEFAULTNUMBUFFERS, DEFAULTBUFSIZE);
+    }
+
+    /**
+     * starts reading ahead
+     *
+     * @param in
+     *
+     * underlying stream, read only by the producer thread
+     *
+     * @param numbuffers
+     *
+     * number of buffers in the ring (at least two)
+     *
+     * @param bufsize
+     *
+     * size of each buffer
+     */
+    public ReadAheadInputStream(InputStream in, int numbuffers, int bufsize) {
+        this.in = in;
+        numbuffers = Math.max(2, numbuffers);
+        bufsize = Math.max(16, bufsize);
+        free = new ArrayBlockingQueue<Chunk>(numbuffers);
+        filled = new ArrayBlockingQueue<Chunk>(numbuffers);
+        for (int i = 0; i < numbuffers; i++) {
+            free.add(new Chunk(bufsize));
+        }
+        producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                produce();
+            }
+        }, "read-ahead");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * fills buffers until the end of the input (runs on the producer thread)
+     */
+    private void produce() {
+        try {
+            boolean done = false;
+            while (!done) {
+                Chunk chunk = free.take();
+                chunk.len = 0;
+                try {
+                    while (chunk.len < chunk.data.length) {
+                        // moderate requests, as some decompressors drop the
+                        // data of a read that ends in an error
+                        int nowlen = Math.min(READSIZE, chunk.data.length - chunk.len);
+                        int nowread = in.read(chunk.data, chunk.len, nowlen);
+                        if (nowread < 0) {
+                            chunk.last = true;
+                            break;
+                        }
+                        chunk.len += nowread;
+                    }
+                } catch (Exception ex) {
+                    chunk.error = ex;
+                    chunk.last = true;
+                }
+                done = chunk.last;
+                filled.put(chunk);
+            }
+        } catch (InterruptedException ex) {
+            // the stream was closed
+        }
+    }
+
+    /**
+     * moves to the next filled buffer when the current one is used up
+     *
+     * @return
+     *
+     * false at the end of the stream
+     */
+    private boolean ensureData() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || pos == current.len) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (eof) {
+                return false;
+            }
+            if (current != null) {
+                free.add(current);
+                current = null;
+            }
+            Chunk next;
+            try {
+                next = filled.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading ahead", ex);
+            }
+            // data read before an error is passed on before the error
+            if (next.error != null) {
+                if (next.error instanceof IOException) {
+                    failure = (IOException) next.error;
+                } else {
+                    failure = new IOException("Error reading ahead", next.error);
+                }
+            }
+            eof = next.last;
+            current = next;
+            pos = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        int ans = current.data[pos] & 0xff;
+        pos++;
+        return ans;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int nowread = Math.min(len, current.len - pos);
+        System.arraycopy(current.data, pos, b, off, nowread);
+        pos += nowread;
+        return nowread;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current == null ? 0 : current.len - pos;
+    }
+
+    /**
+     * stops the producer thread and closes the underlying stream (unless it
+     * is System.in)
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        producer.interrupt();
+        if (in != System.in) {
+            try {
+                // the producer may be in the middle of a read; let it finish
+                // before closing the stream under it
+                producer.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        free.clear();
+        filled.clear();
+        current = null;
+        if (in != System.in) {
+            in.close();
+        }
+    }
+}
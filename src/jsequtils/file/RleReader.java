@@ -0,0 +1,434 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.file;
+
+import apachecommons.compressors.bzip2.BZip2Index;
+import apachecommons.compressors.bzip2.SeekableBZip2CompressorInputStream;
+import apachecommons.compressors.gzip.BGZFCompressorInputStream;
+import apachecommons.compressors.gzip.BGZFIndex;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Random access to an rle-encoded signal written by RleWriter.writeBinary.
+ *
+ * The index of checkpoints is loaded when the reader is created. A query
+ * then seeks to the last checkpoint before the requested position and decodes
+ * runs from there, so it reads at most a few kilobytes of data.
+ *
+ * Files can be uncompressed or compressed as written by OutputStreamMaker.
+ * Uncompressed and BGZF files (extension bgz, or gz written with blocked
+ * output by OutputStreamMaker) are read with direct seeks; the BGZF block
+ * index is taken from a .gzi file if present, otherwise it is built from the
+ * block headers. bzip2 files need a block index (.bzi file, see BZip2Index);
+ * without one, the index is built by decompressing the file once. Plain
+ * (non-BGZF) gzip files do not support seeking and are rejected.
+ *
+ * @NotThreadSafe
+ * @author Tomasz Konopka
+ */
+public class RleReader implements Closeable {
+
+    private final Source source;
+    private final int checkpointruns;
+    // checkpoint k is at run k*checkpointruns, which starts at
+    // positions[k] and is stored at offsets[k] in the uncompressed data
+    private final long[] positions;
+    private final long[] offsets;
+    private final long length;
+    // buffered reading from the source
+    private final byte[] buf = new byte[8192];
+    private int bufpos = 0, buflen = 0;
+
+    /**
+     * opens a binary rle file and reads its index
+     *
+     * @param f
+     * @throws IOException
+     */
+    public RleReader(File f) throws IOException {
+        source = openSource(f);
+        try {
+            // header
+            seek(0);
+            for (int i = 0; i < RleWriter.BINARYMAGIC.length; i++) {
+                if (readByte() != RleWriter.BINARYMAGIC[i]) {
+                    throw new IOException("File is not a binary rle: " + f.getAbsolutePath());
+                }
+            }
+            checkpointruns = (int) readVarint();
+            if (checkpointruns < 1) {
+                throw new IOException("Corrupt binary rle (invalid checkpoint spacing)");
+            }
+
+            // footer and index
+            long size = source.size();
+            if (size < RleWriter.FOOTERSIZE) {
+                throw new IOException("Corrupt binary rle (missing footer)");
+            }
+            seek(size - RleWriter.FOOTERSIZE);
+            long indexoffset = readLong();
+            for (int i = 0; i < RleWriter.INDEXMAGIC.length; i++) {
+                if (readByte() != RleWriter.INDEXMAGIC[i]) {
+                    throw new IOException("Corrupt binary rle (missing footer)");
+                }
+            }
+            if (indexoffset < 0 || indexoffset > size - RleWriter.FOOTERSIZE) {
+                throw new IOException("Corrupt binary rle (invalid index offset)");
+            }
+            seek(indexoffset);
+            long numcheckpoints = readLong();
+            if (numcheckpoints < 0 || numcheckpoints > (size - indexoffset) / 16) {
+                throw new IOException("Corrupt binary rle (invalid index size)");
+            }
+            positions = new long[(int) numcheckpoints];
+            offsets = new long[(int) numcheckpoints];
+            for (int i = 0; i < numcheckpoints; i++) {
+                positions[i] = readLong();
+                offsets[i] = readLong();
+            }
+            length = readLong();
+        } catch (IOException ex) {
+            source.close();
+            throw ex;
+        }
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of positions in the signal
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     *
+     * @param pos
+     *
+     * position in the signal, from 0 to getLength()-1
+     *
+     * @return
+     *
+     * value of the signal at the position
+     *
+     * @throws IOException
+     */
+    public int valueAt(long pos) throws IOException {
+        checkRange(pos, pos + 1);
+        int k = seekCheckpoint(pos);
+        long runindex = (long) k * checkpointruns;
+        long runstart = positions[k];
+        long prev = 0;
+        while (true) {
+            if (runindex % checkpointruns == 0) {
+                prev = 0;
+            }
+            long runlen = readRunLength();
+            prev += unzigzag(readVarint());
+            if (pos < runstart + runlen) {
+                return (int) prev;
+            }
+            runstart += runlen;
+            runindex++;
+        }
+    }
+
+    /**
+     * decodes the runs that cover a part of the signal.
+     *
+     * @param start
+     *
+     * first position
+     *
+     * @param end
+     *
+     * position after the last one
+     *
+     * @return
+     *
+     * two arrays, run lengths and run values. The first and last runs are
+     * clipped to the range, so the lengths add up to end-start.
+     *
+     * @throws IOException
+     */
+    public int[][] runs(long start, long end) throws IOException {
+        checkRange(start, end);
+        int[] lengths = new int[16];
+        int[] values = new int[16];
+        int numruns = 0;
+        if (start == end) {
+            return new int[][]{new int[0], new int[0]};
+        }
+        int k = seekCheckpoint(start);
+        long runindex = (long) k * checkpointruns;
+        long runstart = positions[k];
+        long prev = 0;
+        while (runstart < end) {
+            if (runindex % checkpointruns == 0) {
+                prev = 0;
+            }
+            long runlen = readRunLength();
+            prev += unzigzag(readVarint());
+            long from = Math.max(runstart, start);
+            long to = Math.min(runstart + runlen, end);
+            if (from < to) {
+                if (numruns == lengths.length) {
+                    lengths = Arrays.copyOf(lengths, numruns * 2);
+                    values = Arrays.copyOf(values, numruns * 2);
+                }
+                lengths[numruns] = (int) (to - from);
+                values[numruns] = (int) prev;
+                numruns++;
+            }
+            runstart += runlen;
+            runindex++;
+        }
+        return new int[][]{Arrays.copyOf(lengths, numruns), Arrays.copyOf(values, numruns)};
+    }
+
+    private void checkRange(long start, long end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") outside signal of length " + length);
+        }
+    }
+
+    /**
+     * moves to the last checkpoint at or before a position
+     *
+     * @return
+     *
+     * index of the checkpoint
+     */
+    private int seekCheckpoint(long pos) throws IOException {
+        int k = Arrays.binarySearch(positions, pos);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        seek(offsets[k]);
+        return k;
+    }
+
+    private long readRunLength() throws IOException {
+        long runlen = readVarint();
+        if (runlen == 0) {
+            throw new IOException("Corrupt binary rle (runs end before the signal)");
+        }
+        return runlen;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void seek(long offset) throws IOException {
+        source.seek(offset);
+        bufpos = 0;
+        buflen = 0;
+    }
+
+    private int readByte() throws IOException {
+        if (bufpos == buflen) {
+            buflen = source.read(buf, 0, buf.length);
+            bufpos = 0;
+            if (buflen <= 0) {
+                buflen = 0;
+                throw new EOFException("Unexpected end of binary rle");
+            }
+        }
+        int ans = buf[bufpos];
+        bufpos++;
+        return ans;
+    }
+
+    private long readVarint() throws IOException {
+        long ans = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            ans |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return ans;
+            }
+        }
+        throw new IOException("Corrupt binary rle (varint too long)");
+    }
+
+    private long readLong() throws IOException {
+        long ans = 0;
+        for (int i = 0; i < 8; i++) {
+            ans |= (long) (readByte() & 0xff) << (8 * i);
+        }
+        return ans;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * picks a way to access the uncompressed data based on the file
+     */
+    private static Source openSource(File f) throws IOException {
+        String fextension = FileExtensionGetter.getExtension(f);
+        if ("bz2".equals(fextension)) {
+            return new BZip2Source(f);
+        } else if ("gz".equals(fextension) || "bgz".equals(fextension)) {
+            if (!BGZFCompressorInputStream.isBGZF(f)) {
+                throw new IOException("Binary rle is gzip but not BGZF compressed, which does not allow random access "
+                        + "(write it with blocked output in OutputStreamMaker): " + f.getAbsolutePath());
+            }
+            return new BGZFSource(f);
+        }
+        return new PlainSource(f);
+    }
+
+    /**
+     * uncompressed data with the ability to move to an offset
+     */
+    private static abstract class Source implements Closeable {
+
+        abstract void seek(long offset) throws IOException;
+
+        abstract int read(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * @return
+         *
+         * size of the uncompressed data
+         */
+        abstract long size() throws IOException;
+    }
+
+    private static class PlainSource extends Source {
+
+        private final FileInputStream fis;
+        private final FileChannel channel;
+        private long position = 0;
+
+        PlainSource(File f) throws IOException {
+            fis = new FileInputStream(f);
+            channel = fis.getChannel();
+        }
+
+        @Override
+        void seek(long offset) {
+            position = offset;
+        }
+
+        @Override
+        int read(byte[] b, int off, int len) throws IOException {
+            int nowread = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (nowread > 0) {
+                position += nowread;
+            }
+            return nowread;
+        }
+
+        @Override
+        long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            fis.close();
+        }
+    }
+
+    private static class BGZFSource extends Source {
+
+        private final BGZFCompressorInputStream bgzf;
+        private final BGZFIndex index;
+
+        BGZFSource(File f) throws IOException {
+            File gzifile = BGZFIndex.getIndexFile(f);
+            index = gzifile.exists() ? BGZFIndex.read(gzifile) : BGZFIndex.build(f);
+            bgzf = new BGZFCompressorInputStream(f);
+            bgzf.setIndex(index);
+        }
+
+        @Override
+        void seek(long offset) throws IOException {
+            bgzf.seekUncompressed(offset);
+        }
+
+        @Override
+        int read(byte[] b, int off, int len) throws IOException {
+            return bgzf.read(b, off, len);
+        }
+
+        @Override
+        long size() throws IOException {
+            // the index gives the start of the last blocks; count the bytes
+            // after the last entry
+            long start = index.getUncompressedOffset(index.size() - 1);
+            bgzf.seekUncompressed(start);
+            byte[] b = new byte[65536];
+            long total = start;
+            int nowread;
+            while ((nowread = bgzf.read(b, 0, b.length)) > 0) {
+                total += nowread;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            bgzf.close();
+        }
+    }
+
+    private static class BZip2Source extends Source {
+
+        private final SeekableBZip2CompressorInputStream bzis;
+
+        BZip2Source(File f) throws IOException {
+            File bzifile = BZip2Index.getIndexFile(f);
+            BZip2Index index = bzifile.exists() ? BZip2Index.read(bzifile)
+                    : BZip2Index.build(f, Runtime.getRuntime().availableProcessors());
+            bzis = new SeekableBZip2CompressorInputStream(f, index);
+        }
+
+        @Override
+        void seek(long offset) throws IOException {
+            bzis.seekUncompressed(offset);
+        }
+
+        @Override
+        int read(byte[] b, int off, int len) throws IOException {
+            return bzis.read(b, off, len);
+        }
+
+        @Override
+        long size() {
+            return bzis.getIndex().getTotalSize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            bzis.close();
+        }
+    }
+}
@@ -18,14 +18,25 @@ package jsequtils.file;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 /**
  * writes an rle-encoded signal to an output stream
  *
+ * Signals can be written as text ("length\tvalue" lines) or in a binary
+ * format that supports random access (see writeBinary and RleReader).
+ *
  * @author tkonopka
  */
 public class RleWriter {
 
+    // markers at the start of a binary rle and at the end of its index
+    static final byte[] BINARYMAGIC = {'R', 'L', 'E', 'B'};
+    static final byte[] INDEXMAGIC = {'R', 'L', 'E', 'I'};
+    // size of the footer: offset of the index and INDEXMAGIC
+    static final int FOOTERSIZE = 12;
+    public static final int DEFAULTCHECKPOINTRUNS = 1024;
+
     /**
      * writes an Rle-encoded version of the data to an output stream.
      *
@@ -212,4 +223,161 @@ public class RleWriter {
             boolean header, String valuelabel) throws IOException {
         write(outstream, data, header, valuelabel, null);
     }
+
+    /**
+     * writes an Rle-encoded signal in binary format with default spacing of
+     * checkpoints.
+     *
+     * @param outstream
+     * @param data
+     * @throws IOException
+     */
+    public static void writeBinary(OutputStream outstream, int[] data) throws IOException {
+        writeBinary(outstream, data, DEFAULTCHECKPOINTRUNS);
+    }
+
+    /**
+     * writes an Rle-encoded signal in binary format.
+     *
+     * The output holds a header ("RLEB" and the checkpoint spacing as a
+     * varint), then one record per run: the run length as a varint and the
+     * difference to the value of the previous run as a zigzag varint. At
+     * every checkpoint run the previous value is taken to be zero, so
+     * decoding can start there. A zero length ends the runs. An index
+     * follows: the number of checkpoints, a (position, offset) pair for each
+     * checkpoint, and the total length of the signal. The output ends with
+     * the offset of the index and "RLEI". Fixed-size numbers in the index and
+     * footer are little-endian uint64. Offsets refer to the uncompressed
+     * output, so the stream may be compressed as long as the compressed format
+     * allows seeking: BGZF or bzip2. Create compressed streams with
+     * OutputStreamMaker.makeOutputStream(f, numthreads, async, true) so that
+     * files with extension gz are also written as BGZF. RleReader rejects
+     * plain gzip files.
+     *
+     * @param outstream
+     *
+     * where data will be written to. It needs to be initialized. It is not
+     * closed at the end.
+     *
+     * @param data
+     *
+     * an array with data (null is treated as an empty signal)
+     *
+     * @param checkpointruns
+     *
+     * number of runs between checkpoints
+     *
+     * @throws IOException
+     */
+    public static void writeBinary(OutputStream outstream, int[] data, int checkpointruns) throws IOException {
+        if (data == null) {
+            data = new int[0];
+        }
+        checkpointruns = Math.max(1, checkpointruns);
+        BinaryBuffer bb = new BinaryBuffer(outstream);
+        bb.putBytes(BINARYMAGIC);
+        bb.putVarint(checkpointruns);
+
+        // checkpoints as (position, offset) pairs
+        long[] checkpoints = new long[64];
+        int numcheckpoints = 0;
+        int datalen = data.length;
+        int runstart = 0;
+        long runindex = 0;
+        long prev = 0;
+        for (int i = 1; i <= datalen; i++) {
+            if (i == datalen || data[i] != data[i - 1]) {
+                if (runindex % checkpointruns == 0) {
+                    if (2 * numcheckpoints == checkpoints.length) {
+                        checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                    }
+                    checkpoints[2 * numcheckpoints] = runstart;
+                    checkpoints[2 * numcheckpoints + 1] = bb.getOffset();
+                    numcheckpoints++;
+                    prev = 0;
+                }
+                long delta = (long) data[i - 1] - prev;
+                bb.putVarint(i - runstart);
+                bb.putVarint((delta << 1) ^ (delta >> 63));
+                prev = data[i - 1];
+                runstart = i;
+                runindex++;
+            }
+        }
+        bb.putVarint(0);
+
+        // index and footer
+        long indexoffset = bb.getOffset();
+        bb.putLong(numcheckpoints);
+        for (int i = 0; i < 2 * numcheckpoints; i++) {
+            bb.putLong(checkpoints[i]);
+        }
+        bb.putLong(datalen);
+        bb.putLong(indexoffset);
+        bb.putBytes(INDEXMAGIC);
+        bb.flush();
+    }
+
+    /**
+     * collects encoded bytes and writes them to a stream in large chunks
+     */
+    private static class BinaryBuffer {
+
+        private final OutputStream out;
+        private final byte[] buf = new byte[1 << 16];
+        private int buflen = 0;
+        // number of bytes passed to the stream
+        private long written = 0;
+
+        BinaryBuffer(OutputStream out) {
+            this.out = out;
+        }
+
+        long getOffset() {
+            return written + buflen;
+        }
+
+        void putBytes(byte[] b) throws IOException {
+            for (int i = 0; i < b.length; i++) {
+                putByte(b[i]);
+            }
+        }
+
+        void putByte(int b) throws IOException {
+            if (buflen == buf.length) {
+                flush();
+            }
+            buf[buflen] = (byte) b;
+            buflen++;
+        }
+
+        /**
+         * writes an unsigned number in groups of 7 bits, least significant
+         * first, with the high bit set on all but the last byte
+         */
+        void putVarint(long value) throws IOException {
+            if (buflen > buf.length - 10) {
+                flush();
+            }
+            while ((value & ~0x7fL) != 0) {
+                buf[buflen] = (byte) ((value & 0x7f) | 0x80);
+                buflen++;
+                value >>>= 7;
+            }
+            buf[buflen] = (byte) value;
+            buflen++;
+        }
+
+        void putLong(long value) throws IOException {
+            for (int i = 0; i < 8; i++) {
+                putByte((int) (value >>> (8 * i)));
+            }
+        }
+
+        void flush() throws IOException {
+            out.write(buf, 0, buflen);
+            written += buflen;
+            buflen = 0;
+        }
+    }
 }
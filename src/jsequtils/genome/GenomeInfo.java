@@ -15,13 +15,12 @@
  */
 package jsequtils.genome;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import jsequtils.file.BufferedReaderMaker;
-import jsequtils.sequence.FastaReader;
+import jsequtils.file.FileExtensionGetter;
+import jsequtils.sequence.FastaIndex;
 
 /**
  * Structure holding basic information about a genome: chromosome names and
@@ -77,34 +76,57 @@ public class GenomeInfo {
     /**
      * Constructor using a genome fasta file. If an index file with extension
      * fai exists, all information is read from the index file. Otherwise, this
-     * function will read all the sequence of the genome by brute force.
+     * function will scan the fasta file to measure the chromosomes.
      *
      * @param genome
      * @throws IOException
      */
     public GenomeInfo(File genome) throws IOException {
+        this(genome, false);
+    }
 
-        File faifile = new File(genome.getAbsolutePath() + ".fai");
+    /**
+     * Constructor using a genome fasta file. If an index file with extension
+     * fai exists, all information is read from the index file. Otherwise, the
+     * fasta file is scanned once (without holding sequences in memory).
+     *
+     * @param genome
+     *
+     * fasta file
+     *
+     * @param writeindex
+     *
+     * if true and the index file does not exist, the index computed from the
+     * scan is saved next to the fasta file, in the format of samtools faidx.
+     * This is skipped for compressed files and for files with irregular line
+     * lengths.
+     *
+     * @throws IOException
+     */
+    public GenomeInfo(File genome, boolean writeindex) throws IOException {
+
+        FastaIndex fai;
+        File faifile = FastaIndex.getIndexFile(genome);
         if (faifile.exists() && faifile.canRead()) {
-            BufferedReader br = BufferedReaderMaker.makeBufferedReader(faifile);
-            String s;
-            while ((s = br.readLine()) != null) {
-                String[] tokens = s.split("\t");
-                chrindexes.put(tokens[0], chrnames.size());
-                chrnames.add(tokens[0]);
-                chrlengths.add(Integer.parseInt(tokens[1]));
-            }
-            br.close();
+            fai = new FastaIndex(faifile);
         } else {
-            // genome index does not exist. Read the raw fasta file instead
-            FastaReader fr = new FastaReader(genome);
-            while (fr.hasNext()) {
-                fr.readNext();
-                chrindexes.put(fr.getChromosomeName(), chrnames.size());
-                chrnames.add(fr.getChromosomeName());
-                chrlengths.add(fr.getChromosomeLength());
+            // genome index does not exist. Scan the raw fasta file instead
+            fai = FastaIndex.build(genome);
+            String fextension = FileExtensionGetter.getExtension(genome);
+            boolean compressed = "gz".equals(fextension) || "bgz".equals(fextension) || "bz2".equals(fextension);
+            if (writeindex && !compressed && fai.hasOffsets()) {
+                try {
+                    fai.write(faifile);
+                } catch (IOException ex) {
+                    System.out.println("Error writing fasta index: " + ex.getMessage());
+                }
             }
-            fr.close();
+        }
+
+        for (int i = 0; i < fai.getNumContigs(); i++) {
+            chrindexes.put(fai.getName(i), chrnames.size());
+            chrnames.add(fai.getName(i));
+            chrlengths.add(fai.getLength(i));
         }
 
         chrnames.trimToSize();
@@ -37,6 +37,26 @@ public class GenomePosition implements GenomePositionInterface {
         this.position = position;
     }
 
+    /**
+     * creates a position from a key made by GenomePositionPacker.
+     *
+     * @param key
+     */
+    public GenomePosition(long key) {
+        this.chrindex = GenomePositionPacker.getChrIndex(key);
+        this.position = GenomePositionPacker.getPosition(key);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * this position encoded into a single number, see GenomePositionPacker
+     */
+    public long getKey() {
+        return GenomePositionPacker.pack(chrindex, position);
+    }
+
     @Override
     public String getChr(GenomeInfo ginfo) {
         return ginfo.getChrName(chrindex);
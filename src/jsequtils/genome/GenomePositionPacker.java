@@ -0,0 +1,363 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.genome;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encodes a genome position (chromosome index and position) into a single
+ * long, and provides sorting and searching on arrays of such keys.
+ *
+ * The chromosome index is stored in the high 32 bits and the position in the
+ * low 32 bits. The sign bit of the position is flipped, so that negative
+ * positions sort before positive ones. Comparing two keys as numbers thus
+ * gives the same order as GenomePositionComparator: by chromosome index first,
+ * then by position. Chromosome index -1 (unknown chromosome) gives negative
+ * keys, which sort before all other chromosomes.
+ *
+ * Working on arrays of keys avoids comparators and pointers to objects, so
+ * sorting and searching are scans over a single primitive array.
+ *
+ * @author Tomasz Konopka
+ */
+public class GenomePositionPacker {
+
+    // runs shorter than this are extended using insertion sort
+    private static final int MINRUN = 32;
+    // ranges smaller than this are not split between threads
+    private static final int MINPARALLEL = 8192;
+
+    /**
+     *
+     * @param chrindex
+     * @param position
+     * @return
+     *
+     * a single number encoding both chromosome index and position
+     */
+    public static long pack(int chrindex, int position) {
+        return ((long) chrindex << 32) | ((position ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    public static long pack(GenomePositionInterface pos) {
+        return pack(pos.getChrIndex(), pos.getPosition());
+    }
+
+    /**
+     *
+     * @param positions
+     * @return
+     *
+     * array with keys for each of the input objects.
+     */
+    public static long[] pack(GenomePositionInterface[] positions) {
+        long[] keys = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            keys[i] = pack(positions[i].getChrIndex(), positions[i].getPosition());
+        }
+        return keys;
+    }
+
+    public static int getChrIndex(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int getPosition(long key) {
+        return ((int) key) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     *
+     * @param keys
+     * @return
+     *
+     * true if the keys are in non-decreasing order
+     */
+    public static boolean isSorted(long[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] > keys[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * sorts an array of keys in place, and reports how the keys were moved.
+     *
+     * Sorted input is detected with one linear pass. Otherwise, the function
+     * finds runs that are already in order and merges them, which is fast for
+     * nearly sorted input. The sort is stable.
+     *
+     * @param keys
+     *
+     * array of keys
+     *
+     * @param numthreads
+     *
+     * number of threads used for merging (use 1 to sort on the calling thread)
+     *
+     * @return
+     *
+     * null if the keys were already sorted. Otherwise, an array such that
+     * element i of the sorted array was originally at index order[i].
+     *
+     */
+    public static int[] sort(long[] keys, int numthreads) {
+        int n = keys.length;
+        if (isSorted(keys)) {
+            return null;
+        }
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        // split the array into ascending runs of at least MINRUN items
+        int[] runs = new int[n / MINRUN + 2];
+        int numruns = 0;
+        int start = 0;
+        while (start < n) {
+            int end = start + 1;
+            while (end < n && keys[end - 1] <= keys[end]) {
+                end++;
+            }
+            if (end - start < MINRUN && end < n) {
+                end = Math.min(n, start + MINRUN);
+                insertionSort(keys, order, start, end);
+            }
+            if (numruns == runs.length - 1) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[numruns] = start;
+            numruns++;
+            start = end;
+        }
+        runs[numruns] = n;
+
+        // merge the runs
+        MergeTask task = new MergeTask(keys, order, new long[n], new int[n], runs, 0, numruns);
+        if (numthreads > 1 && n >= MINPARALLEL) {
+            ForkJoinPool pool = new ForkJoinPool(numthreads);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            task.compute();
+        }
+        return order;
+    }
+
+    /**
+     * stable insertion sort on a range [from, to)
+     */
+    private static void insertionSort(long[] keys, int[] order, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            long nowkey = keys[i];
+            int nowindex = order[i];
+            int j = i - 1;
+            while (j >= from && keys[j] > nowkey) {
+                keys[j + 1] = keys[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            keys[j + 1] = nowkey;
+            order[j + 1] = nowindex;
+        }
+    }
+
+    /**
+     *
+     * @param keys
+     *
+     * sorted array of keys
+     *
+     * @param from
+     * @param to
+     *
+     * range of the array to search, [from, to)
+     *
+     * @param key
+     *
+     * @return
+     *
+     * index of the first item in the range that is not smaller than key (to if
+     * there is no such item)
+     */
+    public static int lowerBound(long[] keys, int from, int to, long key) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     *
+     * @param keys
+     * @param from
+     * @param to
+     * @param key
+     * @return
+     *
+     * index of the first item in the range [from, to) that is larger than key
+     * (to if there is no such item)
+     */
+    public static int upperBound(long[] keys, int from, int to, long key) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * search for a key in a sorted array. Similar to Arrays.binarySearch, but
+     * when the array contains several copies of the key, the result is the
+     * index of the first one.
+     *
+     * @param keys
+     * @param key
+     * @return
+     *
+     * index of the key in the array. If not found, (-(insertion point) - 1).
+     *
+     */
+    public static int binarySearch(long[] keys, long key) {
+        int index = lowerBound(keys, 0, keys.length, key);
+        if (index < keys.length && keys[index] == key) {
+            return index;
+        }
+        return -index - 1;
+    }
+
+    /**
+     *
+     * @param keys
+     *
+     * sorted array of keys
+     *
+     * @param startkey
+     * @param endkey
+     *
+     * start and end of an interval, both included
+     *
+     * @return
+     *
+     * number of keys in the interval
+     */
+    public static int countInRange(long[] keys, long startkey, long endkey) {
+        if (endkey < startkey) {
+            return 0;
+        }
+        int startindex = lowerBound(keys, 0, keys.length, startkey);
+        return upperBound(keys, startindex, keys.length, endkey) - startindex;
+    }
+
+    /**
+     * Task merging a range of sorted runs. The range is split in two, each half
+     * is merged (possibly on another thread), and then the two halves are
+     * merged together.
+     */
+    private static class MergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final long[] keys, tempkeys;
+        private final int[] order, temporder;
+        private final int[] runs;
+        private final int fromrun, torun;
+
+        MergeTask(long[] keys, int[] order, long[] tempkeys, int[] temporder,
+                int[] runs, int fromrun, int torun) {
+            this.keys = keys;
+            this.order = order;
+            this.tempkeys = tempkeys;
+            this.temporder = temporder;
+            this.runs = runs;
+            this.fromrun = fromrun;
+            this.torun = torun;
+        }
+
+        @Override
+        protected void compute() {
+            if (torun - fromrun < 2) {
+                return;
+            }
+            int midrun = (fromrun + torun) / 2;
+            MergeTask left = new MergeTask(keys, order, tempkeys, temporder, runs, fromrun, midrun);
+            MergeTask right = new MergeTask(keys, order, tempkeys, temporder, runs, midrun, torun);
+            if (runs[torun] - runs[fromrun] >= MINPARALLEL && getPool() != null) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            merge(runs[fromrun], runs[midrun], runs[torun]);
+        }
+
+        /**
+         * merges two adjacent sorted ranges [from, mid) and [mid, to)
+         */
+        private void merge(int from, int mid, int to) {
+            // nothing to do if the two ranges are already in order
+            if (keys[mid - 1] <= keys[mid]) {
+                return;
+            }
+            System.arraycopy(keys, from, tempkeys, from, to - from);
+            System.arraycopy(order, from, temporder, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                if (tempkeys[j] < tempkeys[i]) {
+                    keys[k] = tempkeys[j];
+                    order[k] = temporder[j];
+                    j++;
+                } else {
+                    keys[k] = tempkeys[i];
+                    order[k] = temporder[i];
+                    i++;
+                }
+                k++;
+            }
+            while (i < mid) {
+                keys[k] = tempkeys[i];
+                order[k] = temporder[i];
+                i++;
+                k++;
+            }
+            while (j < to) {
+                keys[k] = tempkeys[j];
+                order[k] = temporder[j];
+                j++;
+                k++;
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.sequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import jsequtils.file.BufferedReaderMaker;
+import jsequtils.file.ByteLine;
+import jsequtils.file.ByteLineReader;
+import jsequtils.file.OutputStreamMaker;
+
+/**
+ * Contents of a fasta index (.fai) file, as produced by samtools faidx.
+ *
+ * Each line of an index describes one contig: name, length, byte offset of
+ * the first base in the fasta file, number of bases per line, and number of
+ * bytes per line (including the newline).
+ *
+ * An index can also be computed from a fasta file with build(). This scans
+ * the file once without holding sequences in memory.
+ *
+ * @author Tomasz Konopka
+ */
+public class FastaIndex {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ArrayList<String> names = new ArrayList<String>();
+    private final ArrayList<Integer> lengths = new ArrayList<Integer>();
+    private final ArrayList<Long> offsets = new ArrayList<Long>();
+    private final ArrayList<Integer> linebases = new ArrayList<Integer>();
+    private final ArrayList<Integer> linewidths = new ArrayList<Integer>();
+    private final HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+    /**
+     * reads an index from a .fai file.
+     *
+     * Files with only two columns (name and length) are accepted. In that case
+     * the offsets and line layout are recorded as -1.
+     *
+     * @param faifile
+     * @throws IOException
+     */
+    public FastaIndex(File faifile) throws IOException {
+        ByteLineReader br = BufferedReaderMaker.makeByteLineReader(faifile);
+        ByteLine s;
+        while ((s = br.readLine()) != null) {
+            if (s.isEmpty()) {
+                continue;
+            }
+            int numtokens = s.tokenize('\t');
+            if (numtokens >= 5) {
+                add(s.getField(0), s.getFieldInt(1), s.getFieldLong(2),
+                        s.getFieldInt(3), s.getFieldInt(4));
+            } else {
+                add(s.getField(0), s.getFieldInt(1), -1, -1, -1);
+            }
+        }
+        br.close();
+    }
+
+    private FastaIndex() {
+    }
+
+    /**
+     * computes an index by scanning a fasta file.
+     *
+     * Contig lengths are always computed. Offsets and line layouts are
+     * computed as in samtools faidx; contigs with lines of varying length
+     * (other than a shorter last line) are recorded with line layout -1.
+     *
+     * @param genome
+     *
+     * fasta file, possibly compressed (offsets then refer to the uncompressed
+     * data)
+     *
+     * @return
+     * @throws IOException
+     */
+    public static FastaIndex build(File genome) throws IOException {
+        InputStream is = BufferedReaderMaker.makeInputStream(genome);
+        try {
+            return build(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * computes an index by scanning a fasta stream.
+     *
+     * @param is
+     * @return
+     * @throws IOException
+     */
+    public static FastaIndex build(InputStream is) throws IOException {
+        FastaIndex index = new FastaIndex();
+        byte[] buf = new byte[65536];
+        byte[] namebytes = new byte[256];
+
+        // position of the current byte in the stream
+        long offset = 0;
+        // state of the current line
+        boolean atlinestart = true, inheader = false, innameline = false;
+        int namelen = 0, linebases = 0, linebytes = 0;
+        // state of the current contig
+        String name = null;
+        long length = 0, seqoffset = 0;
+        int bases = -1, width = -1;
+        boolean regular = true, sawshort = false;
+
+        int nowread;
+        while ((nowread = is.read(buf)) >= 0) {
+            for (int i = 0; i < nowread; i++, offset++) {
+                byte b = buf[i];
+                if (atlinestart) {
+                    atlinestart = false;
+                    if (b == '>') {
+                        if (name != null) {
+                            index.addScanned(name, length, seqoffset, bases, width, regular);
+                        }
+                        inheader = true;
+                        innameline = true;
+                        namelen = 0;
+                        continue;
+                    }
+                }
+                if (inheader) {
+                    if (b == '\n') {
+                        name = new String(namebytes, 0, namelen, UTF8);
+                        inheader = false;
+                        atlinestart = true;
+                        length = 0;
+                        seqoffset = offset + 1;
+                        bases = -1;
+                        width = -1;
+                        regular = true;
+                        sawshort = false;
+                        linebases = 0;
+                        linebytes = 0;
+                    } else if (innameline) {
+                        // the contig name ends at the first whitespace
+                        if (b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b) {
+                            innameline = false;
+                        } else {
+                            if (namelen == namebytes.length) {
+                                namebytes = Arrays.copyOf(namebytes, namelen * 2);
+                            }
+                            namebytes[namelen] = b;
+                            namelen++;
+                        }
+                    }
+                    continue;
+                }
+                if (name == null) {
+                    // skip anything before the first header line
+                    atlinestart = (b == '\n');
+                    continue;
+                }
+
+                // consume the rest of a sequence line in one go
+                if (b != '\n') {
+                    int j = i;
+                    int numcr = 0;
+                    while (j < nowread && buf[j] != '\n') {
+                        if (buf[j] == '\r') {
+                            numcr++;
+                        }
+                        j++;
+                    }
+                    linebytes += j - i;
+                    linebases += j - i - numcr;
+                    length += j - i - numcr;
+                    offset += j - i - 1;
+                    i = j - 1;
+                    continue;
+                }
+
+                // end of a sequence line
+                linebytes++;
+                atlinestart = true;
+                if (bases < 0) {
+                    bases = linebases;
+                    width = linebytes;
+                    if (bases == 0) {
+                        sawshort = true;
+                    }
+                } else if (linebases > 0 && sawshort) {
+                    regular = false;
+                } else if (linebases != bases || linebytes != width) {
+                    if (linebases < bases && linebytes - linebases == width - bases) {
+                        sawshort = true;
+                    } else if (linebases > 0) {
+                        regular = false;
+                    } else {
+                        sawshort = true;
+                    }
+                }
+                linebases = 0;
+                linebytes = 0;
+            }
+        }
+
+        // the last line of the file may lack a newline
+        if (inheader) {
+            name = new String(namebytes, 0, namelen, UTF8);
+            index.addScanned(name, 0, offset, -1, -1, false);
+        } else if (name != null) {
+            if (linebases > 0) {
+                if (bases < 0) {
+                    bases = linebases;
+                    width = linebytes + 1;
+                } else if (sawshort || linebases > bases) {
+                    regular = false;
+                }
+            }
+            index.addScanned(name, length, seqoffset, bases, width, regular);
+        }
+        return index;
+    }
+
+    /**
+     * records a contig found while scanning a fasta file
+     */
+    private void addScanned(String name, long length, long offset, int bases, int width, boolean regular) {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Contig too long: " + name);
+        }
+        if (length == 0) {
+            add(name, 0, offset, 0, 0);
+        } else if (!regular || bases <= 0) {
+            add(name, (int) length, offset, -1, -1);
+        } else {
+            add(name, (int) length, offset, bases, width);
+        }
+    }
+
+    /**
+     * writes the index in the format of samtools faidx.
+     *
+     * The index is written into a temporary file next to faifile, which is
+     * then renamed. Readers thus never see a partially written index.
+     *
+     * @param faifile
+     * @throws IOException
+     *
+     * if the index does not hold offsets and line layouts for all contigs
+     */
+    public void write(File faifile) throws IOException {
+        if (!hasOffsets()) {
+            throw new IOException("Fasta index is incomplete, cannot write " + faifile.getAbsolutePath());
+        }
+        File tempfile = File.createTempFile(faifile.getName() + ".", ".tmp", faifile.getAbsoluteFile().getParentFile());
+        boolean done = false;
+        try {
+            OutputStream os = OutputStreamMaker.makeOutputStream(tempfile);
+            try {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < names.size(); i++) {
+                    sb.append(names.get(i)).append("\t").append(lengths.get(i)).append("\t")
+                            .append(offsets.get(i)).append("\t").append(linebases.get(i)).append("\t")
+                            .append(linewidths.get(i)).append("\n");
+                }
+                os.write(sb.toString().getBytes(UTF8));
+            } finally {
+                os.close();
+            }
+            try {
+                Files.move(tempfile.toPath(), faifile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempfile.toPath(), faifile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                tempfile.delete();
+            }
+        }
+    }
+
+    /**
+     * appends a description of a contig to the index.
+     *
+     * @param name
+     * @param length
+     * @param offset
+     * @param bases
+     * @param width
+     */
+    private void add(String name, int length, long offset, int bases, int width) {
+        indexes.put(name, names.size());
+        names.add(name);
+        lengths.add(length);
+        offsets.add(offset);
+        linebases.add(bases);
+        linewidths.add(width);
+    }
+
+    /**
+     *
+     * @param genome
+     * @return
+     *
+     * the file where samtools would place the index for a fasta file
+     */
+    public static File getIndexFile(File genome) {
+        return new File(genome.getAbsolutePath() + ".fai");
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of contigs in the index
+     */
+    public int getNumContigs() {
+        return names.size();
+    }
+
+    /**
+     *
+     * @param name
+     * @return
+     *
+     * index of a contig, or -1 if the contig is not in the index
+     */
+    public int getIndex(String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    public int getLength(int index) {
+        return lengths.get(index);
+    }
+
+    public long getOffset(int index) {
+        return offsets.get(index);
+    }
+
+    public int getLineBases(int index) {
+        return linebases.get(index);
+    }
+
+    public int getLineWidth(int index) {
+        return linewidths.get(index);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * true if all the contigs have offsets and line layouts, i.e. the index
+     * can be used to locate bases in the fasta file.
+     */
+    public boolean hasOffsets() {
+        for (int i = 0; i < names.size(); i++) {
+            if (offsets.get(i) < 0) {
+                return false;
+            }
+            // empty contigs do not need a line layout
+            if (lengths.get(i) > 0 && (linebases.get(i) <= 0 || linewidths.get(i) < linebases.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param index
+     *
+     * index of contig
+     *
+     * @param position
+     *
+     * 0-based position within the contig
+     *
+     * @return
+     *
+     * byte offset of the base in the fasta file
+     */
+    public long getFileOffset(int index, int position) {
+        int bases = linebases.get(index);
+        return offsets.get(index) + ((long) (position / bases) * linewidths.get(index)) + (position % bases);
+    }
+}
@@ -18,19 +18,44 @@ package jsequtils.sequence;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import jsequtils.file.BufferedReaderMaker;
+import jsequtils.file.ByteLine;
+import jsequtils.file.ByteLineReader;
 
 /**
  * Reader of a fasta file, one chromosome/contig at a time.
  *
+ * When created from a file or an InputStream, the reader works on bytes
+ * (through a ByteLineReader): bases are converted to uppercase through a
+ * lookup table while they are copied into the sequence array. When created
+ * from a BufferedReader, the reader works line by line on strings.
+ *
  * @author tkonopka
  */
 public class FastaReader {
 
+    private static final byte[] SAMECASE = new byte[256];
+    private static final byte[] UPPERCASE = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            SAMECASE[i] = (byte) i;
+            UPPERCASE[i] = (byte) i;
+        }
+        for (int i = 'a'; i <= 'z'; i++) {
+            UPPERCASE[i] = (byte) (i - 'a' + 'A');
+        }
+    }
     private String name;
     private byte[] sequence;
     private String nextname;
     private BufferedReader chromosomereader;
+    // byte-level input, used instead of chromosomereader
+    private ByteLineReader linereader;
+    // optional index, used to allocate sequence arrays of the right size
+    private FastaIndex index = null;
 
     /**
      * creates a new reader for fasta files
@@ -39,6 +64,7 @@ public class FastaReader {
      */
     public FastaReader(BufferedReader reader) throws IOException {
         chromosomereader = reader;
+        linereader = null;
         name = null;
         sequence = null;
         nextname = null;
@@ -62,7 +88,69 @@ public class FastaReader {
      * @throws IOException 
      */
     public FastaReader(File genome) throws IOException {
-        this(BufferedReaderMaker.makeBufferedReader(genome));
+        this(BufferedReaderMaker.makeByteLineReader(genome));
+        // the index is only a hint for sizing arrays, so a faulty index is ignored
+        File faifile = FastaIndex.getIndexFile(genome);
+        if (faifile.exists() && faifile.canRead()) {
+            try {
+                index = new FastaIndex(faifile);
+            } catch (Exception ex) {
+                index = null;
+            }
+        }
+    }
+
+    /**
+     * creates a new reader for fasta files that works on bytes
+     *
+     * @param stream
+     *
+     * stream with fasta content (already decompressed)
+     *
+     * @throws IOException
+     */
+    public FastaReader(InputStream stream) throws IOException {
+        this(new ByteLineReader(stream));
+    }
+
+    /**
+     * creates a new reader for fasta files that works on bytes
+     *
+     * @param reader
+     *
+     * reader of lines with fasta content
+     *
+     * @throws IOException
+     */
+    public FastaReader(ByteLineReader reader) throws IOException {
+        chromosomereader = null;
+        linereader = reader;
+        name = null;
+        sequence = null;
+        nextname = null;
+
+        // record the name of the first chromosome
+        ByteLine line = linereader.readLine();
+        if (line != null && line.startsWith(">")) {
+            nextname = getHeaderName(line);
+        }
+    }
+
+    /**
+     * extracts the chromosome name from a header line
+     */
+    private static String getHeaderName(ByteLine line) {
+        // the name is the first word after the '>'
+        int end = 1;
+        int linelen = line.length();
+        while (end < linelen) {
+            byte b = line.byteAt(end);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0b) {
+                break;
+            }
+            end++;
+        }
+        return line.toString(1, end);
     }
     
     /**
@@ -96,6 +184,11 @@ public class FastaReader {
             return;
         }
 
+        if (linereader != null) {
+            readNextBytes(toUpper);
+            return;
+        }
+
         StringBuilder sb = new StringBuilder(65536);
         String s;
 
@@ -127,6 +220,50 @@ public class FastaReader {
 
     }
 
+    /**
+     * byte-level implementation of readNext
+     */
+    private void readNextBytes(boolean toUpper) throws IOException {
+        name = nextname;
+        nextname = null;
+        byte[] convert = toUpper ? UPPERCASE : SAMECASE;
+
+        byte[] seq;
+        int expected = (index == null || index.getIndex(name) < 0) ? -1 : index.getLength(index.getIndex(name));
+        if (expected >= 0) {
+            seq = new byte[expected];
+        } else {
+            seq = new byte[65536];
+        }
+        int seqlen = 0;
+
+        ByteLine line;
+        while ((line = linereader.readLine()) != null) {
+            if (line.startsWith(">")) {
+                nextname = getHeaderName(line);
+                break;
+            }
+            byte[] linebytes = line.getBytes();
+            int end = line.getEnd();
+            if (seqlen + line.length() > seq.length) {
+                seq = Arrays.copyOf(seq, Math.max(seq.length * 2, seqlen + line.length()));
+            }
+            for (int i = line.getStart(); i < end; i++) {
+                byte b = linebytes[i];
+                if (b != '\r') {
+                    seq[seqlen] = convert[b & 0xff];
+                    seqlen++;
+                }
+            }
+        }
+
+        if (seqlen == seq.length) {
+            sequence = seq;
+        } else {
+            sequence = Arrays.copyOf(seq, seqlen);
+        }
+    }
+
     /**
      *
      * @return
@@ -251,11 +388,15 @@ public class FastaReader {
     }
     
     /**
-     * closes the buffered reader
+     * closes the buffered reader (or the input stream)
      */
     public void close() {
         try {
-            chromosomereader.close();
+            if (linereader != null) {
+                linereader.close();
+            } else {
+                chromosomereader.close();
+            }
         } catch (Exception ex) {
         }
         name = null;
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.sequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An object giving access to sequences in a fasta file with an index (.fai).
+ *
+ * Unlike SequenceMap, this class does not load sequences into memory. The
+ * fasta file is memory-mapped and queries are answered by computing the byte
+ * offsets of the requested bases using the line layout recorded in the index.
+ * Creating the object is thus fast, and the pages of the file are shared with
+ * other processes through the operating system's cache.
+ *
+ * Queries follow the same conventions as SequenceMap.
+ *
+ * The fasta file must be uncompressed: the offsets in the index refer to
+ * the uncompressed text, so they cannot be used to address bytes in a gzip,
+ * BGZF, or bzip2 file. Compressed files are rejected when the object is
+ * created; use SequenceMap to read them.
+ *
+ * @author Tomasz Konopka
+ */
+public class IndexedSequenceMap implements SequenceMapInterface {
+
+    // the file is mapped in windows of this size (a single mapping is limited to 2GB)
+    private static final int WINDOWBITS = 30;
+    private static final long WINDOWMASK = (1L << WINDOWBITS) - 1;
+    private final MappedByteBuffer[] windows;
+    private final FastaIndex index;
+    // translation applied to each byte read from the file
+    private final byte[] convert = new byte[256];
+
+    /**
+     * initialize the sequence map using a genome fasta file and its index.
+     *
+     * @param genome
+     *
+     * genome file, uncompressed. An index file (genome.fai) must exist.
+     *
+     * @param toupper
+     *
+     * boolean determines if sequences are automatically converted to uppercase
+     *
+     * @throws IOException
+     *
+     * also if the genome file is compressed with gzip or bzip2
+     */
+    public IndexedSequenceMap(File genome, boolean toupper) throws IOException {
+        File faifile = FastaIndex.getIndexFile(genome);
+        if (!faifile.exists() || !faifile.canRead()) {
+            throw new IOException("Fasta index not found: " + faifile.getAbsolutePath());
+        }
+        index = new FastaIndex(faifile);
+        if (!index.hasOffsets()) {
+            throw new IOException("Fasta index does not describe line layout: " + faifile.getAbsolutePath());
+        }
+
+        for (int i = 0; i < 256; i++) {
+            convert[i] = (byte) i;
+        }
+        if (toupper) {
+            for (int i = 'a'; i <= 'z'; i++) {
+                convert[i] = (byte) (i - 'a' + 'A');
+            }
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(genome, "r");
+        try {
+            if (isCompressed(raf)) {
+                throw new IOException("Indexed access requires an uncompressed fasta file: " + genome.getAbsolutePath());
+            }
+            FileChannel channel = raf.getChannel();
+            long filesize = channel.size();
+            int numwindows = (int) ((filesize + WINDOWMASK) >>> WINDOWBITS);
+            windows = new MappedByteBuffer[numwindows];
+            for (int i = 0; i < numwindows; i++) {
+                long start = (long) i << WINDOWBITS;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(WINDOWMASK + 1, filesize - start));
+            }
+        } finally {
+            // mappings remain valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     *
+     * @param raf
+     * @return
+     *
+     * true if the file starts with the magic bytes of gzip (including BGZF)
+     * or bzip2
+     *
+     * @throws IOException
+     */
+    private static boolean isCompressed(RandomAccessFile raf) throws IOException {
+        byte[] magic = new byte[3];
+        raf.seek(0);
+        int n = raf.read(magic);
+        raf.seek(0);
+        if (n >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return true;
+        }
+        return n == 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h';
+    }
+
+    /**
+     *
+     * @param offset
+     * @return
+     *
+     * byte at a given offset in the fasta file (after conversion)
+     */
+    private byte getByte(long offset) {
+        return convert[windows[(int) (offset >>> WINDOWBITS)].get((int) (offset & WINDOWMASK)) & 0xff];
+    }
+
+    /**
+     * copies bases [start, to) of a contig into an array.
+     *
+     * Bases are copied in runs that end at line breaks or at window borders.
+     */
+    private void copyBases(int chrindex, int start, int to, byte[] dest) {
+        int linebases = index.getLineBases(chrindex);
+        int pos = start;
+        int destpos = 0;
+        while (pos < to) {
+            long offset = index.getFileOffset(chrindex, pos);
+            int runlen = Math.min(to - pos, linebases - (pos % linebases));
+            runlen = (int) Math.min(runlen, (WINDOWMASK + 1) - (offset & WINDOWMASK));
+            ByteBuffer window = windows[(int) (offset >>> WINDOWBITS)].duplicate();
+            window.position((int) (offset & WINDOWMASK));
+            window.get(dest, destpos, runlen);
+            pos += runlen;
+            destpos += runlen;
+        }
+        for (int i = 0; i < destpos; i++) {
+            dest[i] = convert[dest[i] & 0xff];
+        }
+    }
+
+    /**
+     * get sequence associated with a genomic interval.
+     *
+     * @param chr
+     *
+     * chromsome name
+     *
+     * @param start
+     *
+     * 0-based start coordinate (included)
+     *
+     * @param to
+     *
+     * 0-based start coordinate (not included)
+     *
+     * @return
+     *
+     * sequence in interval [start, to). As in SequenceMap, positions beyond
+     * the end of the chromosome are filled with zeros.
+     *
+     */
+    @Override
+    public byte[] getSequenceBase0(String chr, int start, int to) {
+        int chrindex = index.getIndex(chr);
+        if (chrindex < 0) {
+            return null;
+        }
+        int chrlen = index.getLength(chrindex);
+        if (start > to) {
+            throw new IllegalArgumentException(start + " > " + to);
+        }
+        if (start < 0 || start > chrlen) {
+            throw new ArrayIndexOutOfBoundsException(start);
+        }
+        byte[] ans = new byte[to - start];
+        copyBases(chrindex, start, Math.min(to, chrlen), ans);
+        return ans;
+    }
+
+    @Override
+    public byte getSequenceBase0(String chr, int pos) {
+        int chrindex = index.getIndex(chr);
+        if (chrindex < 0) {
+            return '\0';
+        }
+        if (pos < 0 || pos >= index.getLength(chrindex)) {
+            throw new ArrayIndexOutOfBoundsException(pos);
+        }
+        return getByte(index.getFileOffset(chrindex, pos));
+    }
+
+    /**
+     * get sequence associated with a genomic interval, defined using a
+     * 1-based coordinate system.
+     *
+     * @param chr
+     *
+     * chromosome name
+     *
+     * @param start
+     *
+     * 1-based start coordinate (included)
+     *
+     * @param to
+     *
+     * 1-based start coordinate (included)
+     *
+     * @return
+     *
+     * sequence in interval [start, to].
+     *
+     */
+    @Override
+    public byte[] getSequenceBase1(String chr, int start, int to) {
+        return getSequenceBase0(chr, start - 1, to);
+    }
+
+    @Override
+    public byte getSequenceBase1(String chr, int pos) {
+        return getSequenceBase0(chr, pos - 1);
+    }
+
+    /**
+     *
+     * @param chr
+     *
+     * @return
+     *
+     * true if the chromosome is described in the fasta index
+     *
+     */
+    @Override
+    public boolean containsChr(String chr) {
+        return index.getIndex(chr) >= 0;
+    }
+
+    /**
+     *
+     * @param chr
+     * @return
+     *
+     * the number of bases in a given chromosome
+     *
+     */
+    @Override
+    public int getChrLength(String chr) {
+        int chrindex = index.getIndex(chr);
+        if (chrindex < 0) {
+            return -1;
+        }
+        return index.getLength(chrindex);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of chromosomes described in the fasta index
+     *
+     */
+    @Override
+    public int getNumChr() {
+        return index.getNumContigs();
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.sequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An object holding sequences associated with chromosome names, like
+ * SequenceMap, but using about a quarter of the memory.
+ *
+ * Bases A, C, G, T are stored using two bits each. Other characters (e.g. N
+ * blocks) are recorded in a table of runs. When case is preserved, lowercase
+ * (soft-masked) regions are recorded in a second table of runs.
+ *
+ * Queries follow the same conventions as SequenceMap.
+ *
+ * @author Tomasz Konopka
+ */
+public class PackedSequenceMap implements SequenceMapInterface {
+
+    private static final byte[] CODE2BASE = {'A', 'C', 'G', 'T'};
+    private static final byte[] BASE2CODE = new byte[256];
+
+    static {
+        Arrays.fill(BASE2CODE, (byte) -1);
+        BASE2CODE['A'] = 0;
+        BASE2CODE['C'] = 1;
+        BASE2CODE['G'] = 2;
+        BASE2CODE['T'] = 3;
+        BASE2CODE['a'] = 0;
+        BASE2CODE['c'] = 1;
+        BASE2CODE['g'] = 2;
+        BASE2CODE['t'] = 3;
+    }
+    private final HashMap<String, PackedSequence> seqmap = new HashMap<String, PackedSequence>();
+
+    /**
+     * initialize the sequence map by reading a genome from a fasta file.
+     *
+     * @param genome
+     *
+     * genome file to read
+     *
+     * @param toupper
+     *
+     * boolean determines if sequences are automatically converted to uppercase.
+     * If false, lowercase regions are recorded and reproduced in queries.
+     *
+     * @throws java.io.IOException
+     *
+     */
+    public PackedSequenceMap(File genome, boolean toupper) throws IOException {
+        FastaReader fr = new FastaReader(genome);
+        while (fr.hasNext()) {
+            fr.readNext(toupper);
+            seqmap.put(fr.getChromosomeName(), new PackedSequence(fr.getFullChromosomeSequence()));
+        }
+        fr.close();
+    }
+
+    /**
+     * get sequence associated with a genomic interval.
+     *
+     * @param chr
+     *
+     * chromsome name
+     *
+     * @param start
+     *
+     * 0-based start coordinate (included)
+     *
+     * @param to
+     *
+     * 0-based start coordinate (not included)
+     *
+     * @return
+     *
+     * sequence in interval [start, to). As in SequenceMap, positions beyond
+     * the end of the chromosome are filled with zeros.
+     *
+     */
+    @Override
+    public byte[] getSequenceBase0(String chr, int start, int to) {
+        PackedSequence seq = seqmap.get(chr);
+        if (seq == null) {
+            return null;
+        }
+        if (start > to) {
+            throw new IllegalArgumentException(start + " > " + to);
+        }
+        if (start < 0 || start > seq.length) {
+            throw new ArrayIndexOutOfBoundsException(start);
+        }
+        byte[] ans = new byte[to - start];
+        seq.copy(start, Math.min(to, seq.length), ans);
+        return ans;
+    }
+
+    @Override
+    public byte getSequenceBase0(String chr, int pos) {
+        PackedSequence seq = seqmap.get(chr);
+        if (seq == null) {
+            return '\0';
+        }
+        if (pos < 0 || pos >= seq.length) {
+            throw new ArrayIndexOutOfBoundsException(pos);
+        }
+        return seq.get(pos);
+    }
+
+    /**
+     * get sequence associated with a genomic interval, defined using a
+     * 1-based coordinate system.
+     *
+     * @param chr
+     *
+     * chromosome name
+     *
+     * @param start
+     *
+     * 1-based start coordinate (included)
+     *
+     * @param to
+     *
+     * 1-based start coordinate (included)
+     *
+     * @return
+     *
+     * sequence in interval [start, to].
+     *
+     */
+    @Override
+    public byte[] getSequenceBase1(String chr, int start, int to) {
+        return getSequenceBase0(chr, start - 1, to);
+    }
+
+    @Override
+    public byte getSequenceBase1(String chr, int pos) {
+        return getSequenceBase0(chr, pos - 1);
+    }
+
+    /**
+     *
+     * @param chr
+     *
+     *
+     * @return
+     *
+     * true if the chromosome is loaded in this sequence map object.
+     *
+     */
+    @Override
+    public boolean containsChr(String chr) {
+        return seqmap.containsKey(chr);
+    }
+
+    /**
+     *
+     * @param chr
+     * @return
+     *
+     * the number of bases in a given chromosome
+     *
+     */
+    @Override
+    public int getChrLength(String chr) {
+        PackedSequence seq = seqmap.get(chr);
+        if (seq == null) {
+            return -1;
+        }
+        return seq.length;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of chromosomes loaded into the sequence map
+     *
+     */
+    @Override
+    public int getNumChr() {
+        return seqmap.size();
+    }
+
+    /**
+     * One chromosome sequence. Bases are packed 32 per long. Positions that do
+     * not hold A, C, G, or T are stored as runs of a repeated character.
+     * Lowercase positions are stored as runs without a value.
+     */
+    private static class PackedSequence {
+
+        private final int length;
+        private final long[] bases;
+        private final RunTable others;
+        private final RunTable lowercase;
+
+        PackedSequence(byte[] sequence) {
+            length = sequence.length;
+            bases = new long[(length + 31) >>> 5];
+            RunTable nowothers = new RunTable();
+            RunTable nowlowercase = new RunTable();
+            for (int i = 0; i < length; i++) {
+                int b = sequence[i] & 0xff;
+                boolean lower = b >= 'a' && b <= 'z';
+                int code = BASE2CODE[b];
+                if (code < 0) {
+                    nowothers.add(i, (byte) (lower ? b - 'a' + 'A' : b));
+                } else {
+                    bases[i >>> 5] |= (long) code << ((i & 31) << 1);
+                }
+                if (lower) {
+                    nowlowercase.add(i, (byte) 0);
+                }
+            }
+            nowothers.trim();
+            nowlowercase.trim();
+            others = nowothers;
+            lowercase = nowlowercase;
+        }
+
+        byte get(int pos) {
+            byte ans = CODE2BASE[(int) (bases[pos >>> 5] >>> ((pos & 31) << 1)) & 3];
+            int run = others.find(pos);
+            if (run < others.size && others.starts[run] <= pos) {
+                ans = others.values[run];
+            }
+            run = lowercase.find(pos);
+            if (run < lowercase.size && lowercase.starts[run] <= pos) {
+                ans = (byte) (ans - 'A' + 'a');
+            }
+            return ans;
+        }
+
+        /**
+         * writes bases [start, to) into dest
+         */
+        void copy(int start, int to, byte[] dest) {
+            for (int i = start; i < to; i++) {
+                dest[i - start] = CODE2BASE[(int) (bases[i >>> 5] >>> ((i & 31) << 1)) & 3];
+            }
+            // overwrite positions covered by runs
+            for (int run = others.find(start); run < others.size && others.starts[run] < to; run++) {
+                int from = Math.max(start, others.starts[run]);
+                int until = Math.min(to, others.ends[run]);
+                Arrays.fill(dest, from - start, until - start, others.values[run]);
+            }
+            for (int run = lowercase.find(start); run < lowercase.size && lowercase.starts[run] < to; run++) {
+                int from = Math.max(start, lowercase.starts[run]);
+                int until = Math.min(to, lowercase.ends[run]);
+                for (int i = from; i < until; i++) {
+                    dest[i - start] = (byte) (dest[i - start] - 'A' + 'a');
+                }
+            }
+        }
+    }
+
+    /**
+     * Table of non-overlapping runs [start, end), each with a byte value, in
+     * increasing order of position.
+     */
+    private static class RunTable {
+
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        byte[] values = new byte[16];
+        int size = 0;
+
+        /**
+         * adds one position to the table, extending the last run if the
+         * position and value continue it.
+         */
+        void add(int pos, byte value) {
+            if (size > 0 && ends[size - 1] == pos && values[size - 1] == value) {
+                ends[size - 1]++;
+                return;
+            }
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            starts[size] = pos;
+            ends[size] = pos + 1;
+            values[size] = value;
+            size++;
+        }
+
+        void trim() {
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            values = Arrays.copyOf(values, size);
+        }
+
+        /**
+         *
+         * @param pos
+         * @return
+         *
+         * index of the first run that ends after pos (size if there is no such
+         * run)
+         */
+        int find(int pos) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] <= pos) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -28,7 +28,7 @@ import java.util.HashMap;
  * 
  * @author Tomasz Konopka
  */
-public class SequenceMap {
+public class SequenceMap implements SequenceMapInterface {
    
     private final HashMap<String, byte[]> seqmap = new HashMap<String, byte[]>();
     
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.sequence;
+
+/**
+ * Queries on sequences associated with chromosome names, regardless of where
+ * the sequences are held (in memory or in a file).
+ *
+ * @author Tomasz Konopka
+ */
+public interface SequenceMapInterface {
+    public byte[] getSequenceBase0(String chr, int start, int to);
+    public byte getSequenceBase0(String chr, int pos);
+    public byte[] getSequenceBase1(String chr, int start, int to);
+    public byte getSequenceBase1(String chr, int pos);
+    public boolean containsChr(String chr);
+    public int getChrLength(String chr);
+    public int getNumChr();
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.variants;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Storage for many strings with mostly distinct values (e.g. id or info
+ * columns in a vcf file). All the strings are stored as bytes in large pages.
+ * Each string is referred to by a single long, which encodes the page, offset
+ * within the page, and length of the string.
+ *
+ * @author Tomasz Konopka
+ */
+class BytePool {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // layout of references: 16 bits page, 24 bits offset, 24 bits length
+    private static final int PAGEBITS = 24;
+    private static final int PAGESIZE = 1 << PAGEBITS;
+    private static final int MAXPAGES = 1 << 16;
+    private final ArrayList<byte[]> pages = new ArrayList<byte[]>();
+    private byte[] nowpage = null;
+    private int nowused = PAGESIZE;
+
+    /**
+     *
+     * @param s
+     * @return
+     *
+     * a reference to the string within the pool
+     */
+    long add(String s) {
+        byte[] b = s.getBytes(UTF8);
+        if (b.length >= PAGESIZE) {
+            throw new IllegalArgumentException("String too long for pool: " + b.length + " bytes");
+        }
+
+        // start a new page when the current one is full
+        if (nowused + b.length > PAGESIZE) {
+            if (pages.size() >= MAXPAGES) {
+                throw new IllegalStateException("Byte pool is full");
+            }
+            int pagesize = pages.isEmpty() ? 65536 : PAGESIZE;
+            nowpage = new byte[Math.max(pagesize, b.length)];
+            pages.add(nowpage);
+            nowused = 0;
+        } else if (nowused + b.length > nowpage.length) {
+            // the first page starts small and grows up to full size
+            byte[] bigger = new byte[Math.min(PAGESIZE, Math.max(nowpage.length * 2, nowused + b.length))];
+            System.arraycopy(nowpage, 0, bigger, 0, nowused);
+            nowpage = bigger;
+            pages.set(pages.size() - 1, nowpage);
+        }
+
+        long ref = ((long) (pages.size() - 1) << (2 * PAGEBITS)) | ((long) nowused << PAGEBITS) | b.length;
+        System.arraycopy(b, 0, nowpage, nowused, b.length);
+        nowused += b.length;
+        return ref;
+    }
+
+    /**
+     *
+     * @param ref
+     * @return
+     *
+     * the string referred to by a reference obtained through add()
+     */
+    String get(long ref) {
+        int page = (int) (ref >>> (2 * PAGEBITS));
+        int offset = (int) (ref >>> PAGEBITS) & (PAGESIZE - 1);
+        int len = (int) ref & (PAGESIZE - 1);
+        return new String(pages.get(page), offset, len, UTF8);
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.variants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import jsequtils.genome.GenomeInfo;
+import jsequtils.genome.GenomePosition;
+import jsequtils.genome.GenomePositionInterface;
+import jsequtils.genome.GenomePositionPacker;
+
+/**
+ * Container class that stores a set of variants, like VCFEntrySet, but with
+ * lower memory requirements.
+ *
+ * Instead of one VCFEntry object per variant, this class holds the variants
+ * column by column. Chromosomes and positions are held in one primitive array
+ * of keys (see GenomePositionPacker).
+ * Columns with few distinct values (ref, alt, quality, filter, format) are
+ * dictionary-encoded. Columns with mostly distinct values (id, info, genotype)
+ * are stored as bytes in a pool.
+ *
+ * VCFEntry objects are only created on request, e.g. through getVariant() or
+ * getAtLocus(). These objects are copies, so changing them does not affect
+ * the set.
+ *
+ * @author Tomasz Konopka
+ */
+public class CompactVCFEntrySet {
+
+    // hold information from a vcf file - header, column definitions
+    private final StringBuilder header = new StringBuilder();
+    private final StringBuilder coldefs = new StringBuilder();
+    // genome information (used to create VCFEntry objects)
+    private final GenomeInfo ginfo;
+    // variants, column by column
+    private int size = 0;
+    private long[] keys;
+    private int[] ref, alt, quality, filter, format;
+    private long[] id, info, genotype;
+    private final StringDictionary refdict = new StringDictionary();
+    private final StringDictionary altdict = new StringDictionary();
+    private final StringDictionary qualitydict = new StringDictionary();
+    private final StringDictionary filterdict = new StringDictionary();
+    private final StringDictionary formatdict = new StringDictionary();
+    private final BytePool pool = new BytePool();
+
+    /**
+     * A constructor that starts with a list of variants already in memory
+     *
+     * @param vars
+     * @param ginfo
+     * @param withindels
+     */
+    public CompactVCFEntrySet(ArrayList<VCFEntry> vars, GenomeInfo ginfo, boolean withindels) {
+        this.ginfo = ginfo;
+        allocate(vars.size());
+        for (int i = 0; i < vars.size(); i++) {
+            if (withindels || !vars.get(i).isIndel()) {
+                add(vars.get(i));
+            }
+        }
+        finish();
+    }
+
+    /**
+     *
+     * A set of variants are read from a file. Header, columns and variants will
+     * be stored in memory.
+     *
+     * @param f
+     *
+     * File from which to read variants
+     *
+     * @param ginfo
+     *
+     * An object describing the reference genome
+     *
+     * @param withindels
+     *
+     * if true, the entryset will retain rows in the input that describe indels.
+     * If false, such rows will be omitted.
+     *
+     */
+    public CompactVCFEntrySet(File f, GenomeInfo ginfo, boolean withindels) {
+        this.ginfo = ginfo;
+        allocate(65536);
+
+        try {
+            VCFReader vcfreader = new VCFReader(f, ginfo, withindels);
+            header.append(vcfreader.getHeader());
+            coldefs.append(vcfreader.getColDefLine());
+            VCFEntry nowentry;
+            while ((nowentry = vcfreader.readNext()) != null) {
+                add(nowentry);
+            }
+            vcfreader.close();
+        } catch (Exception ex) {
+            System.out.println("Error reading vcf file: " + ex.getMessage());
+        }
+
+        finish();
+    }
+
+    private void allocate(int capacity) {
+        capacity = Math.max(capacity, 16);
+        keys = new long[capacity];
+        ref = new int[capacity];
+        alt = new int[capacity];
+        quality = new int[capacity];
+        filter = new int[capacity];
+        format = new int[capacity];
+        id = new long[capacity];
+        info = new long[capacity];
+        genotype = new long[capacity];
+    }
+
+    private void resize(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        ref = Arrays.copyOf(ref, capacity);
+        alt = Arrays.copyOf(alt, capacity);
+        quality = Arrays.copyOf(quality, capacity);
+        filter = Arrays.copyOf(filter, capacity);
+        format = Arrays.copyOf(format, capacity);
+        id = Arrays.copyOf(id, capacity);
+        info = Arrays.copyOf(info, capacity);
+        genotype = Arrays.copyOf(genotype, capacity);
+    }
+
+    /**
+     * appends one variant at the end of the columns
+     *
+     * @param entry
+     */
+    private void add(VCFEntry entry) {
+        if (size == keys.length) {
+            resize(size + (size >> 1));
+        }
+        keys[size] = GenomePositionPacker.pack(entry);
+        ref[size] = refdict.encode(entry.getRef());
+        alt[size] = altdict.encode(entry.getAlt());
+        quality[size] = qualitydict.encode(entry.getQuality());
+        filter[size] = filterdict.encode(entry.getFilter());
+        format[size] = formatdict.encode(entry.getFormat());
+        id[size] = pool.add(entry.getId());
+        info[size] = pool.add(entry.getInfo());
+        genotype[size] = pool.add(entry.getGenotype());
+        size++;
+    }
+
+    /**
+     * trims the columns, sorts the variants, and discards lookup tables that
+     * are only needed while loading.
+     */
+    private void finish() {
+        resize(size);
+        refdict.freeze();
+        altdict.freeze();
+        qualitydict.freeze();
+        filterdict.freeze();
+        formatdict.freeze();
+
+        int[] order = GenomePositionPacker.sort(keys, 1);
+        if (order != null) {
+            ref = permute(ref, order);
+            alt = permute(alt, order);
+            quality = permute(quality, order);
+            filter = permute(filter, order);
+            format = permute(format, order);
+            id = permute(id, order);
+            info = permute(info, order);
+            genotype = permute(genotype, order);
+        }
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        int[] ans = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            ans[i] = values[order[i]];
+        }
+        return ans;
+    }
+
+    private static long[] permute(long[] values, int[] order) {
+        long[] ans = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            ans[i] = values[order[i]];
+        }
+        return ans;
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *
+     * a new VCFEntry object holding the variant at the desired index.
+     *
+     */
+    public VCFEntry getVariant(int index) {
+        VCFEntry entry = new VCFEntry(ginfo);
+        entry.setChr(ginfo.getChrName(getChrIndex(index)));
+        entry.setPosition(getPosition(index));
+        entry.setId(pool.get(id[index]));
+        entry.setRef(refdict.decode(ref[index]));
+        entry.setAlt(altdict.decode(alt[index]));
+        entry.setQuality(qualitydict.decode(quality[index]));
+        entry.setFilter(filterdict.decode(filter[index]));
+        entry.setInfo(pool.get(info[index]));
+        entry.setFormat(formatdict.decode(format[index]));
+        entry.setGenotype(pool.get(genotype[index]));
+        return entry;
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *
+     * chromosome index of the variant at desired index (does not create a
+     * VCFEntry object)
+     */
+    public int getChrIndex(int index) {
+        return GenomePositionPacker.getChrIndex(keys[index]);
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *
+     * position of the variant at desired index (does not create a VCFEntry
+     * object)
+     */
+    public int getPosition(int index) {
+        return GenomePositionPacker.getPosition(keys[index]);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of variants in the set.
+     *
+     */
+    public int size() {
+        return size;
+    }
+
+    public String getHeader() {
+        return header.toString();
+    }
+
+    public String getColDefLine() {
+        return coldefs.toString();
+    }
+
+    /**
+     * Checks if the entryset has a variant at position indicated by the given
+     * variant.
+     *
+     * @param entry
+     *
+     * @return
+     *
+     */
+    public boolean containsPosition(GenomePositionInterface entry) {
+        return getIndexOf(entry) >= 0;
+    }
+
+    /**
+     * Checks if the entryset has a variant at position indicated by the string.
+     * The string should be in format, e.g. chr5:2039
+     *
+     * @param locus
+     * @return
+     */
+    public boolean containsPosition(String locus) {
+        String[] tokens = locus.split(":");
+        GenomePosition newentry = new GenomePosition(tokens[0], Integer.parseInt(tokens[1]), ginfo);
+        return containsPosition(newentry);
+    }
+
+    /**
+     * compares the entry with the stored variants.
+     *
+     * @param entry
+     * @return
+     *
+     * the index of the variant at the position of the entry. If there is no
+     * such variant, a negative number (-(insertion point) - 1), as in
+     * Arrays.binarySearch.
+     */
+    public int getIndexOf(GenomePositionInterface entry) {
+        return GenomePositionPacker.binarySearch(keys, GenomePositionPacker.pack(entry));
+    }
+
+    /**
+     *
+     * @param entry
+     * @return
+     *
+     * null if the entry set does not contain a variant at indicated position.
+     *
+     */
+    public VCFEntry getAtLocus(GenomePositionInterface entry) {
+        int index = getIndexOf(entry);
+        if (index < 0) {
+            return null;
+        }
+        return getVariant(index);
+    }
+
+    /**
+     * similar to getNumberInInterval with chrindex.
+     *
+     * interval is (start, end), i.e. both are included
+     *
+     * @param chr
+     * @param start
+     * @param end
+     * @return
+     */
+    public int getNumberInInterval(String chr, int start, int end) {
+        if (end < start) {
+            return 0;
+        }
+        return getNumberInInterval(ginfo.getChrIndex(chr), start, end);
+    }
+
+    /**
+     * computes how many variants are within an interval, using binary searches
+     * on the sorted keys.
+     *
+     * interval is (start, end), i.e. both are included
+     *
+     * @param chrindex
+     * @param start
+     * @param end
+     * @return
+     */
+    public int getNumberInInterval(int chrindex, int start, int end) {
+        if (end < start) {
+            return 0;
+        }
+        return GenomePositionPacker.countInRange(keys,
+                GenomePositionPacker.pack(chrindex, start), GenomePositionPacker.pack(chrindex, end));
+    }
+
+    /**
+     * Runs a check on the variants read into the variant entry set.
+     *
+     * @return
+     *
+     * If all variants can be matched with a chromosome with ginfo, returns
+     * true. If not, false.
+     */
+    public boolean check() {
+        for (int i = 0; i < size; i++) {
+            if (ginfo.getChrName(getChrIndex(i)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.variants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Dictionary encoding for string columns with few distinct values (e.g. filter
+ * or format columns in a vcf file). Each distinct string is stored once and is
+ * referred to by an integer code.
+ *
+ * @author Tomasz Konopka
+ */
+class StringDictionary {
+
+    // codes are indexes into the values list
+    private final ArrayList<String> values = new ArrayList<String>();
+    // lookup from string to code, only needed while the dictionary is growing
+    private HashMap<String, Integer> codes = new HashMap<String, Integer>();
+
+    /**
+     *
+     * @param s
+     * @return
+     *
+     * the code associated with the string. If the string is new, it is added
+     * to the dictionary.
+     */
+    int encode(String s) {
+        Integer code = codes.get(s);
+        if (code == null) {
+            code = values.size();
+            values.add(s);
+            codes.put(s, code);
+        }
+        return code;
+    }
+
+    /**
+     *
+     * @param code
+     * @return
+     *
+     * the string associated with a code
+     */
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     *
+     * @return
+     *
+     * number of distinct strings in the dictionary
+     */
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * discards the lookup table. After this, decode() still works but encode()
+     * should not be used anymore.
+     */
+    void freeze() {
+        codes = null;
+        values.trimToSize();
+    }
+}
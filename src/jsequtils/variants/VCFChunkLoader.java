@@ -0,0 +1,239 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.variants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import jsequtils.file.ByteLine;
+import jsequtils.file.ByteLineReader;
+import jsequtils.file.FileExtensionGetter;
+import jsequtils.file.MappedFile;
+import jsequtils.file.MappedInputStream;
+import jsequtils.genome.GenomeInfo;
+
+/**
+ * Loads variants from an uncompressed vcf file using several threads.
+ *
+ * The file is memory-mapped and the data part is split into byte ranges that
+ * start and end at line boundaries. Each range is parsed by a separate task
+ * reading from the shared mapping, and the parsed chunks are joined back
+ * together in the order of the file.
+ *
+ * @author Tomasz Konopka
+ */
+class VCFChunkLoader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private final File f;
+    private final GenomeInfo ginfo;
+    private final boolean withindels;
+    private final StringBuilder header = new StringBuilder();
+    private final StringBuilder coldefs = new StringBuilder();
+    // byte offset of the first data line
+    private long datastart = 0;
+
+    /**
+     * prepares a loader, reads the header of the vcf file.
+     *
+     * @param f
+     * @param ginfo
+     * @param withindels
+     * @throws IOException
+     */
+    VCFChunkLoader(File f, GenomeInfo ginfo, boolean withindels) throws IOException {
+        this.f = f;
+        this.ginfo = ginfo;
+        this.withindels = withindels;
+        readHeader();
+    }
+
+    /**
+     *
+     * @param f
+     * @return
+     *
+     * true if the file can be split into byte ranges, i.e. if it is a normal
+     * uncompressed file.
+     */
+    static boolean canSplit(File f) {
+        if (f == null || !f.isFile()) {
+            return false;
+        }
+        String fextension = FileExtensionGetter.getExtension(f);
+        return !("gz".equals(fextension) || "bgz".equals(fextension) || "bz2".equals(fextension));
+    }
+
+    String getHeader() {
+        return header.toString();
+    }
+
+    String getColDefLine() {
+        return coldefs.toString();
+    }
+
+    /**
+     * reads header lines (starting with #) up to and including the #CHROM
+     * line and records where the data begins.
+     */
+    private void readHeader() throws IOException {
+        FileInputStream fis = new FileInputStream(f);
+        FileChannel channel = fis.getChannel();
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(65536);
+            long offset = 0;
+            boolean done = false;
+            byte[] linebytes = new byte[256];
+            int linelen = 0;
+            while (!done) {
+                buf.clear();
+                int nowread = channel.read(buf, offset + linelen);
+                if (nowread <= 0) {
+                    break;
+                }
+                for (int i = 0; i < nowread && !done; i++) {
+                    byte b = buf.get(i);
+                    if (linelen == 0 && b != '#') {
+                        done = true;
+                    } else if (b == '\n') {
+                        String line = new String(linebytes, 0, linelen, UTF8);
+                        if (line.endsWith("\r")) {
+                            line = line.substring(0, line.length() - 1);
+                        }
+                        offset += linelen + 1;
+                        linelen = 0;
+                        if (line.startsWith("#CHROM")) {
+                            coldefs.append(line).append("\n");
+                            done = true;
+                        } else {
+                            header.append(line).append("\n");
+                        }
+                    } else {
+                        if (linelen == linebytes.length) {
+                            linebytes = Arrays.copyOf(linebytes, linelen * 2);
+                        }
+                        linebytes[linelen] = b;
+                        linelen++;
+                    }
+                }
+            }
+            // a header line at the very end of the file may lack a newline
+            if (!done && linelen > 0) {
+                header.append(new String(linebytes, 0, linelen, UTF8)).append("\n");
+                offset += linelen;
+            }
+            datastart = offset;
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * parses the data part of the file.
+     *
+     * @param numthreads
+     *
+     * number of threads used for parsing
+     *
+     * @return
+     *
+     * array of variants, in the order of the file
+     *
+     * @throws IOException
+     */
+    VCFEntry[] load(int numthreads) throws IOException {
+        MappedFile mapped = new MappedFile(f);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, numthreads));
+        try {
+            long[] bounds = mapped.splitLines(datastart, Math.max(1, numthreads) * 4);
+            return pool.invoke(new ChunkTask(mapped, bounds, 0, bounds.length - 1));
+        } finally {
+            pool.shutdown();
+            mapped.close();
+        }
+    }
+
+    /**
+     * parses one chunk of the file. Lines are read directly from the mapped
+     * file, so the chunk is not copied into memory as a whole.
+     *
+     * @return
+     *
+     * variants from the chunk, in order of the file
+     */
+    private VCFEntry[] parseChunk(MappedFile mapped, long start, long end) throws IOException {
+        ByteLineReader linereader = new ByteLineReader(new MappedInputStream(mapped.slice(start, end)));
+        ArrayList<VCFEntry> chunkvars = new ArrayList<VCFEntry>(1 + (int) ((end - start) / 128));
+        ByteLine line;
+        while ((line = linereader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                VCFEntry nowentry = new VCFEntry(line.toString(), ginfo);
+                if (withindels || !nowentry.isIndel()) {
+                    chunkvars.add(nowentry);
+                }
+            }
+        }
+        return chunkvars.toArray(new VCFEntry[chunkvars.size()]);
+    }
+
+    /**
+     * Task that produces variants for a range of chunks. A single chunk is
+     * parsed directly. Larger ranges are split in two, and the two halves are
+     * concatenated.
+     */
+    private class ChunkTask extends RecursiveTask<VCFEntry[]> {
+
+        private static final long serialVersionUID = 1L;
+        private final MappedFile mapped;
+        private final long[] bounds;
+        private final int from, to;
+
+        ChunkTask(MappedFile mapped, long[] bounds, int from, int to) {
+            this.mapped = mapped;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected VCFEntry[] compute() {
+            if (to - from == 1) {
+                try {
+                    return parseChunk(mapped, bounds[from], bounds[to]);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+            }
+
+            int mid = (from + to) / 2;
+            ChunkTask left = new ChunkTask(mapped, bounds, from, mid);
+            ChunkTask right = new ChunkTask(mapped, bounds, mid, to);
+            right.fork();
+            VCFEntry[] a = left.compute();
+            VCFEntry[] b = right.join();
+            VCFEntry[] ans = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, ans, a.length, b.length);
+            return ans;
+        }
+    }
+}
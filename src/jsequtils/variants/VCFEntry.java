@@ -24,6 +24,14 @@ import jsequtils.genome.GenomePositionInterface;
  *
  * (Should now deprecate the VcfEntry class, so it's ok the code is duplicated.)
  *
+ * When an entry is created from a line of a vcf file, only the chromosome and
+ * position are parsed immediately. The line is kept and the other columns are
+ * extracted only when they are first requested. Thus, code that only looks at
+ * positions does not pay for splitting the info and genotype columns.
+ *
+ * Getters can be called on one entry from several threads; extraction of a
+ * column from the line is synchronized. Setters are not synchronized.
+ *
  * @author Tomasz Konopka
  */
 public class VCFEntry implements GenomePositionInterface {
@@ -36,13 +44,29 @@ public class VCFEntry implements GenomePositionInterface {
     private String filter = ".";
     private String info = ".";
     private final GenomeInfo ginfo;
+    // flags for columns that are extracted lazily from the raw line
+    private static final int ID = 1, REF = 2, ALT = 4, QUALITY = 8, FILTER = 16,
+            INFO = 32, FORMAT = 64, GENOTYPE = 128, ALLCOLUMNS = 255;
+    // raw line, its length without newline, and position of the tab after the position column
+    private String line = null;
+    private int lineend;
+    private int postab;
+    // positions of tabs after the position column (computed on first use)
+    private int[] tabs = null;
+    // columns that have been extracted from the line, or set explicitly
+    // (volatile so that getters see the column fields written by decode)
+    private volatile int decoded = ALLCOLUMNS;
 
     public String getAlt() {
+        if ((decoded & ALT) == 0) {
+            decode(ALT);
+        }
         return alt;
     }
 
     public void setAlt(String alt) {
         this.alt = alt;
+        setDecoded(ALT);
     }
 
     @Override
@@ -59,6 +83,9 @@ public class VCFEntry implements GenomePositionInterface {
     }
 
     public String getFilter() {
+        if ((decoded & FILTER) == 0) {
+            decode(FILTER);
+        }
         return filter;
     }
 
@@ -69,6 +96,7 @@ public class VCFEntry implements GenomePositionInterface {
      */
     public void setFilter(String filter) {
         this.filter = filter;
+        setDecoded(FILTER);
     }
 
     /**
@@ -81,14 +109,15 @@ public class VCFEntry implements GenomePositionInterface {
     public void addFilter(String f) {
         // if filter status is empty or passing, simply replace current value
         // with the new value.
-        if (this.filter.equals(".") || this.filter.equals("PASS")) {
+        String filter = getFilter();
+        if (filter.equals(".") || filter.equals("PASS")) {
             this.filter = f;
             return;
         }
 
         // if exisitng filter already exists, check, perhaps it already
         // contains the required new filter code
-        String[] havefilters = this.filter.split(",");
+        String[] havefilters = filter.split(",");
         for (int i = 0; i < havefilters.length; i++) {
             if (havefilters[i].equals(f)) {
                 return;
@@ -100,35 +129,51 @@ public class VCFEntry implements GenomePositionInterface {
     }
 
     public String getFormat() {
+        if ((decoded & FORMAT) == 0) {
+            decode(FORMAT);
+        }
         return format;
     }
 
     public void setFormat(String format) {
         this.format = format;
+        setDecoded(FORMAT);
     }
 
     public String getGenotype() {
+        if ((decoded & GENOTYPE) == 0) {
+            decode(GENOTYPE);
+        }
         return genotype;
     }
 
     public void setGenotype(String genotype) {
         this.genotype = genotype;
+        setDecoded(GENOTYPE);
     }
 
     public String getId() {
+        if ((decoded & ID) == 0) {
+            decode(ID);
+        }
         return id;
     }
 
     public void setId(String id) {
         this.id = id;
+        setDecoded(ID);
     }
 
     public String getInfo() {
+        if ((decoded & INFO) == 0) {
+            decode(INFO);
+        }
         return info;
     }
 
     public void setInfo(String info) {
         this.info = info;
+        setDecoded(INFO);
     }
 
     @Override
@@ -141,19 +186,27 @@ public class VCFEntry implements GenomePositionInterface {
     }
 
     public String getQuality() {
+        if ((decoded & QUALITY) == 0) {
+            decode(QUALITY);
+        }
         return quality;
     }
 
     public void setQuality(String quality) {
         this.quality = quality;
+        setDecoded(QUALITY);
     }
 
     public String getRef() {
+        if ((decoded & REF) == 0) {
+            decode(REF);
+        }
         return ref;
     }
 
     public void setRef(String ref) {
         this.ref = ref;
+        setDecoded(REF);
     }
 
     /**
@@ -172,47 +225,193 @@ public class VCFEntry implements GenomePositionInterface {
     public VCFEntry(VCFEntry entry) {
         this.position = entry.position;
         this.chrindex = entry.chrindex;
-        this.ref = entry.ref;
-        this.alt = entry.alt;
-        this.quality = entry.quality;
-        this.format = entry.format;
-        this.genotype = entry.genotype;
-        this.id = entry.id;
-        this.filter = entry.filter;
-        this.info = entry.info;
         this.ginfo = entry.ginfo;
+        // columns and the raw line change together when columns are decoded
+        synchronized (entry) {
+            this.ref = entry.ref;
+            this.alt = entry.alt;
+            this.quality = entry.quality;
+            this.format = entry.format;
+            this.genotype = entry.genotype;
+            this.id = entry.id;
+            this.filter = entry.filter;
+            this.info = entry.info;
+            this.line = entry.line;
+            this.lineend = entry.lineend;
+            this.postab = entry.postab;
+            this.tabs = entry.tabs;
+            this.decoded = entry.decoded;
+        }
     }
 
     /**
-     * Constructor that parses a line from a vcf file
+     * Constructor that parses a line from a vcf file.
+     *
+     * Only the chromosome and position are parsed here. The other columns are
+     * extracted from the line when they are first requested. A trailing
+     * newline on the line is ignored, as are sample columns after the first.
      *
      * @param entry
      */
     public VCFEntry(String entry, GenomeInfo ginfo) {
         this.ginfo = ginfo;
-        String[] tokens = entry.split("\t");
-        chrindex = ginfo.getChrIndex(tokens[0]);
-        position = Integer.parseInt(tokens[1]);
-        if (tokens.length > 2) {
-            id = tokens[2];
-            ref = tokens[3];
-            alt = tokens[4];
-            quality = tokens[5];
-            filter = tokens[6];
-            info = tokens[7];
-            if (tokens.length > 8) {
-                format = tokens[8];
-                genotype = tokens[9];
+
+        lineend = entry.length();
+        while (lineend > 0 && (entry.charAt(lineend - 1) == '\n' || entry.charAt(lineend - 1) == '\r')) {
+            lineend--;
+        }
+
+        int chrtab = entry.indexOf('\t');
+        if (chrtab < 0 || chrtab >= lineend) {
+            throw new IllegalArgumentException("Vcf line does not have a position column: " + entry);
+        }
+        chrindex = ginfo.getChrIndex(entry.substring(0, chrtab));
+        postab = entry.indexOf('\t', chrtab + 1);
+        if (postab < 0 || postab > lineend) {
+            postab = lineend;
+        }
+        position = parsePosition(entry, chrtab + 1, postab);
+
+        // remaining columns are extracted later, if needed. Only columns up
+        // to the first sample are kept; further samples are never used.
+        if (postab < lineend) {
+            int end = postab;
+            for (int i = 0; i < 8 && end < lineend; i++) {
+                end = entry.indexOf('\t', end + 1);
+                if (end < 0 || end > lineend) {
+                    end = lineend;
+                }
+            }
+            lineend = end;
+            line = end < entry.length() ? entry.substring(0, end) : entry;
+            decoded = 0;
+        }
+    }
+
+    /**
+     * parses a non-negative integer from part of a string without creating a
+     * substring. Unusual numbers are passed on to Integer.parseInt.
+     */
+    private static int parsePosition(String s, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return Integer.parseInt(s.substring(start, end));
+        }
+        int ans = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(s.substring(start, end));
+            }
+            ans = (ans * 10) + digit;
+        }
+        return ans;
+    }
+
+    /**
+     * extracts one column from the raw line and stores it in its field.
+     *
+     * @param column
+     *
+     * flag of the column, e.g. ALT
+     */
+    private synchronized void decode(int column) {
+        // another thread may have decoded the column in the meantime
+        if ((decoded & column) != 0) {
+            return;
+        }
+        switch (column) {
+            case ID:
+                id = getColumn(2, id);
+                break;
+            case REF:
+                ref = getColumn(3, ref);
+                break;
+            case ALT:
+                alt = getColumn(4, alt);
+                break;
+            case QUALITY:
+                quality = getColumn(5, quality);
+                break;
+            case FILTER:
+                filter = getColumn(6, filter);
+                break;
+            case INFO:
+                info = getColumn(7, info);
+                break;
+            case FORMAT:
+                format = getColumn(8, format);
+                break;
+            case GENOTYPE:
+                genotype = getColumn(9, genotype);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid column flag: " + column);
+        }
+        setDecoded(column);
+    }
+
+    /**
+     * extracts one column from the raw line. Must be called while holding
+     * the lock on this entry.
+     *
+     * @param column
+     *
+     * index of column in a vcf line (0 is chromosome, 1 is position, etc.)
+     *
+     * @param missing
+     *
+     * value to return if the line does not have that many columns
+     *
+     * @return
+     */
+    private String getColumn(int column, String missing) {
+        if (tabs == null) {
+            // record positions of tabs for the id, ref, ..., genotype columns
+            int[] nowtabs = new int[9];
+            int numtabs = 0;
+            int nowtab = postab;
+            while (numtabs < nowtabs.length && nowtab < lineend) {
+                nowtabs[numtabs] = nowtab;
+                numtabs++;
+                nowtab = line.indexOf('\t', nowtab + 1);
+                if (nowtab < 0 || nowtab > lineend) {
+                    nowtab = lineend;
+                }
             }
+            for (int i = numtabs; i < nowtabs.length; i++) {
+                nowtabs[i] = lineend;
+            }
+            tabs = nowtabs;
+        }
+
+        int start = tabs[column - 2];
+        if (start >= lineend) {
+            return missing;
+        }
+        return line.substring(start + 1, tabs[column - 1]);
+    }
+
+    /**
+     * records that a column no longer needs to be extracted from the line. Once
+     * all the columns are extracted, the line is released.
+     *
+     * @param column
+     */
+    private synchronized void setDecoded(int column) {
+        int nowdecoded = decoded | column;
+        if (nowdecoded == ALLCOLUMNS) {
+            line = null;
+            tabs = null;
         }
+        decoded = nowdecoded;
     }
 
     public void setAlt(byte alt) {
-        this.alt = "" + (char) alt;
+        setAlt("" + (char) alt);
     }
 
     public void setRef(byte ref) {
-        this.ref = "" + (char) ref;
+        setRef("" + (char) ref);
     }
 
     /**
@@ -223,7 +422,7 @@ public class VCFEntry implements GenomePositionInterface {
      * @return
      */
     public boolean isIndel() {
-        return isIndel(ref, alt);
+        return isIndel(getRef(), getAlt());
     }
 
     /**
@@ -253,10 +452,14 @@ public class VCFEntry implements GenomePositionInterface {
 
     @Override
     public String toString() {
+        String format = getFormat();
+        String genotype = getGenotype();
+        String common = getChr() + "\t" + position + "\t" + getId() + "\t" + getRef() + "\t" + getAlt()
+                + "\t" + getQuality() + "\t" + getFilter() + "\t" + getInfo();
         if ((format + genotype).length() > 0) {
-            return getChr() + "\t" + position + "\t" + id + "\t" + ref + "\t" + alt + "\t" + quality + "\t" + filter + "\t" + info + "\t" + format + "\t" + genotype + "\n";
+            return common + "\t" + format + "\t" + genotype + "\n";
         } else {
-            return getChr() + "\t" + position + "\t" + id + "\t" + ref + "\t" + alt + "\t" + quality + "\t" + filter + "\t" + info + "\n";
+            return common + "\n";
         }
     }
 
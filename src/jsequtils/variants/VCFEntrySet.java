@@ -17,15 +17,14 @@
  */
 package jsequtils.variants;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
-import jsequtils.file.BufferedReaderMaker;
 import jsequtils.genome.GenomeInfo;
 import jsequtils.genome.GenomePosition;
 import jsequtils.genome.GenomePositionComparator;
 import jsequtils.genome.GenomePositionInterface;
+import jsequtils.genome.GenomePositionPacker;
 
 /**
  * Container class that stores a set of variants in an array. Array should be
@@ -40,6 +39,8 @@ public class VCFEntrySet {
     private final StringBuilder header = new StringBuilder();
     private final StringBuilder coldefs = new StringBuilder();
     private VCFEntry[] variants;
+    // chromosome and position of each variant, encoded by GenomePositionPacker
+    private long[] keys;
     // genome information (used for sorting and searching for variants)
     private final GenomeInfo ginfo;
     private final GenomePositionComparator vcomp;
@@ -69,7 +70,7 @@ public class VCFEntrySet {
             variants[i] = tempvars.get(i);
         }
 
-        Arrays.sort(variants, vcomp);
+        sortVariants(1);
     }
 
     /**
@@ -92,46 +93,68 @@ public class VCFEntrySet {
      *
      */
     public VCFEntrySet(File f, GenomeInfo ginfo, boolean withindels) {
+        this(f, ginfo, withindels, 1);
+    }
+
+    /**
+     *
+     * A set of variants are read from a file using several threads. Header,
+     * columns and variants will be stored in memory.
+     *
+     * Parallel parsing is only possible for uncompressed files. Compressed
+     * files are read using one thread.
+     *
+     * @param f
+     *
+     * File from which to read variants
+     *
+     * @param ginfo
+     *
+     * An object describing the reference genome
+     *
+     * @param withindels
+     *
+     * if true, the entryset will retain rows in the input that describe indels.
+     * If false, such rows will be omitted.
+     *
+     * @param numthreads
+     *
+     * number of threads used to parse the file
+     *
+     */
+    public VCFEntrySet(File f, GenomeInfo ginfo, boolean withindels, int numthreads) {
 
         // comparator will be useful to search and sort variants
         this.ginfo = ginfo;
         this.vcomp = new GenomePositionComparator();
 
-        // reader for the input vcf file
-        BufferedReader vcfreader;
+        if (numthreads > 1 && VCFChunkLoader.canSplit(f)) {
+            // parse the file in chunks
+            try {
+                VCFChunkLoader loader = new VCFChunkLoader(f, ginfo, withindels);
+                header.append(loader.getHeader());
+                coldefs.append(loader.getColDefLine());
+                variants = loader.load(numthreads);
+            } catch (Exception ex) {
+                System.out.println("Error reading vcf file: " + ex.getMessage());
+                variants = new VCFEntry[0];
+            }
+            sortVariants(numthreads);
+            System.gc();
+            return;
+        }
 
         // temporary object (because don't know how many variants to read from file, use resizeable arraylist)
         ArrayList<VCFEntry> tempvars = new ArrayList<VCFEntry>(1048576);
 
-        // read entries from the file into memory
+        // read entries from the file into memory, one at a time
         try {
-            vcfreader = BufferedReaderMaker.makeBufferedReader(f);
-
-            // read the header
-            boolean headerdone = false;
-            String line = vcfreader.readLine();
-            while (line != null && !headerdone) {
-                if (line.startsWith("#CHROM")) {
-                    coldefs.append(line).append("\n");
-                    headerdone = true;
-                } else if (line.startsWith("#")) {
-                    header.append(line).append("\n");
-                }
-                line = vcfreader.readLine();
-            }
-
-            // read the whole vcf file into memory
-            while (line != null) {
-                VCFEntry nowentry = new VCFEntry(line, ginfo);
-                // add it if the variant is a substitution or if indels are explicitly allowed
-                if (nowentry.isIndel()) {
-                    if (withindels) {
-                        tempvars.add(nowentry);
-                    }
-                } else {
-                    tempvars.add(nowentry);
-                }
-                line = vcfreader.readLine();
+            VCFReader vcfreader = new VCFReader(f, ginfo, withindels);
+            header.append(vcfreader.getHeader());
+            coldefs.append(vcfreader.getColDefLine());
+            VCFEntry nowentry;
+            while ((nowentry = vcfreader.readNext()) != null) {
+                tempvars.add(nowentry);
             }
             vcfreader.close();
         } catch (Exception ex) {
@@ -144,10 +167,28 @@ public class VCFEntrySet {
             variants[i] = tempvars.get(i);
         }
 
-        Arrays.sort(variants, vcomp);
+        sortVariants(numthreads);
         System.gc();
     }
 
+    /**
+     * sorts the variants by chromosome and position and computes the search
+     * keys. The sort is stable.
+     *
+     * @param numthreads
+     */
+    private void sortVariants(int numthreads) {
+        keys = GenomePositionPacker.pack(variants);
+        int[] order = GenomePositionPacker.sort(keys, numthreads);
+        if (order != null) {
+            VCFEntry[] sorted = new VCFEntry[variants.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = variants[order[i]];
+            }
+            variants = sorted;
+        }
+    }
+
     /**
      * Change the header of the VCF set by adding one line. If the exact line
      * already exists in the header, this function does nothing.
@@ -226,7 +267,7 @@ public class VCFEntrySet {
      *
      */
     public boolean containsPosition(GenomePositionInterface entry) {
-        return (Arrays.binarySearch(variants, entry, vcomp) >= 0);
+        return getIndexOf(entry) >= 0;
     }
 
     /**
@@ -235,10 +276,24 @@ public class VCFEntrySet {
      * @param entry
      * @return
      *
-     * the index of the
+     * the index of the first variant at the position of the entry. If there is
+     * no such variant, a negative number (-(insertion point) - 1), as in
+     * Arrays.binarySearch.
      */
     public int getIndexOf(GenomePositionInterface entry) {
-        return Arrays.binarySearch(variants, entry, vcomp);
+        return GenomePositionPacker.binarySearch(keys, GenomePositionPacker.pack(entry));
+    }
+
+    /**
+     *
+     * @param index
+     * @return
+     *
+     * chromosome and position of the variant at desired index, encoded by
+     * GenomePositionPacker.
+     */
+    long getKey(int index) {
+        return keys[index];
     }
 
     /**
@@ -263,11 +318,11 @@ public class VCFEntrySet {
      *
      */
     public VCFEntry getAtLocus(GenomePositionInterface entry) {
-        int pos = Arrays.binarySearch(variants, entry, vcomp);
+        int pos = getIndexOf(entry);
         if (pos < 0) {
             return null;
         } else {
-            return new VCFEntry(variants[pos].toString(), ginfo);
+            return new VCFEntry(variants[pos]);
         }
     }
 
@@ -291,8 +346,8 @@ public class VCFEntrySet {
     }
 
     /**
-     * looks through a set of variants and compute how many are within an
-     * interval
+     * computes how many variants are within an interval, using binary searches
+     * on the sorted keys.
      *
      * interval is (start, end), i.e. both are included
      *
@@ -306,30 +361,8 @@ public class VCFEntrySet {
             return 0;
         }
 
-        // get index of start using a binary search
-        int startindex = getIndexOf(new GenomePosition(chrindex, start));
-        if (startindex < 0) {
-            startindex = -startindex - 1;
-        }
-
-        // get the end index by forward linear search
-        // this should work if the interval is small
-        int endindex = startindex;
-        if (end - start < 256) {
-            // for short intervals, use a linear search
-            int varsize = variants.length;
-            GenomePosition gend = new GenomePosition(chrindex, end);
-            while (endindex < varsize && vcomp.compare(variants[endindex], gend) <= 0) {
-                endindex++;
-            }
-        } else {
-            // for larger intervals, use binary search            
-            endindex = Arrays.binarySearch(variants, new GenomePosition(chrindex, end + 1), vcomp);
-            if (endindex < 0) {
-                endindex = -endindex - 1;
-            }
-        }
-        return endindex - startindex;
+        return GenomePositionPacker.countInRange(keys,
+                GenomePositionPacker.pack(chrindex, start), GenomePositionPacker.pack(chrindex, end));
     }
 
     /**
@@ -384,7 +417,7 @@ public class VCFEntrySet {
         for (int i = 0; i < simplevars.size(); i++) {
             variants[i] = simplevars.get(i);
         }
-        Arrays.sort(variants, vcomp);
+        sortVariants(1);
 
         if (splitsome) {
             addHeaderLines("##FILTER=<ID=separated,Description=\"Variant obtained by splitting a complex variant into multiple positions\">");
@@ -19,6 +19,7 @@ import java.io.File;
 import java.util.ArrayList;
 import jsequtils.genome.GenomeInfo;
 import jsequtils.genome.GenomePositionInterface;
+import jsequtils.genome.GenomePositionPacker;
 
 /**
  * Class holds a set of VCF entries, like VCFEntrySet. Here, searching for
@@ -88,8 +89,9 @@ public class VCFEntrySetWithTracker extends VCFEntrySet {
         int numtries = -1;
         int direction = 0;
         int ss = size();
+        long key = GenomePositionPacker.pack(entry);
         while (numtries < maxlinear) {
-            int temp = compare(entry, this.getVariant(lastindex));            
+            int temp = Long.compare(key, getKey(lastindex));
             if (temp == 0) {
                 return lastindex;
             } else if (temp < 0) {
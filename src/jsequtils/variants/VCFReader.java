@@ -0,0 +1,296 @@
+/*
+ * Copyright 2026 Tomasz Konopka.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jsequtils.variants;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import jsequtils.file.BufferedReaderMaker;
+import jsequtils.file.ByteLine;
+import jsequtils.file.ByteLineReader;
+import jsequtils.genome.GenomeInfo;
+
+/**
+ * Reader of a vcf file, one variant at a time.
+ *
+ * Unlike VCFEntrySet, this class never holds more than one variant in memory.
+ * The header and column definition line are read in the constructor, so they
+ * are available before the first variant is requested.
+ *
+ * The reader can be used through readNext(), or as an Iterator.
+ *
+ * When created from a file, lines are read as bytes (with a ByteLineReader).
+ * Rows that are skipped because they describe indels are then examined
+ * without creating strings.
+ *
+ * @author Tomasz Konopka
+ */
+public class VCFReader implements Iterator<VCFEntry> {
+
+    // hold information from the vcf header
+    private final StringBuilder header = new StringBuilder();
+    private final StringBuilder coldefs = new StringBuilder();
+    // genome information is needed to create VCFEntry objects
+    private final GenomeInfo ginfo;
+    private final boolean withindels;
+    // input is read either with a BufferedReader or with a ByteLineReader
+    private final BufferedReader vcfreader;
+    private final ByteLineReader linereader;
+    // the first data line is read together with the header, so keep it here
+    private String firstline;
+    private ByteLine firstbyteline;
+    // the next variant to be returned by the iterator (read ahead in hasNext)
+    private VCFEntry nextentry = null;
+
+    /**
+     * creates a reader for a vcf file. The file can be plain text or
+     * compressed with gzip or bzip2.
+     *
+     * @param f
+     *
+     * File from which to read variants
+     *
+     * @param ginfo
+     *
+     * An object describing the reference genome
+     *
+     * @param withindels
+     *
+     * if true, the reader will return rows in the input that describe indels.
+     * If false, such rows will be skipped.
+     *
+     * @throws IOException
+     */
+    public VCFReader(File f, GenomeInfo ginfo, boolean withindels) throws IOException {
+        this(BufferedReaderMaker.makeByteLineReader(f), ginfo, withindels);
+    }
+
+    /**
+     * creates a reader for vcf data coming from a ByteLineReader.
+     *
+     * @param reader
+     * @param ginfo
+     * @param withindels
+     * @throws IOException
+     */
+    public VCFReader(ByteLineReader reader, GenomeInfo ginfo, boolean withindels) throws IOException {
+        this.vcfreader = null;
+        this.linereader = reader;
+        this.ginfo = ginfo;
+        this.withindels = withindels;
+
+        // read the header, up to and including the column definitions
+        ByteLine line = linereader.readLine();
+        while (line != null && line.startsWith("#")) {
+            if (line.startsWith("#CHROM")) {
+                coldefs.append(line.toString()).append("\n");
+                line = linereader.readLine();
+                break;
+            }
+            header.append(line.toString()).append("\n");
+            line = linereader.readLine();
+        }
+        // the line object stays valid until the next call to readLine()
+        firstbyteline = line;
+    }
+
+    /**
+     * creates a reader for vcf data coming from a BufferedReader.
+     *
+     * @param reader
+     * @param ginfo
+     * @param withindels
+     * @throws IOException
+     */
+    public VCFReader(BufferedReader reader, GenomeInfo ginfo, boolean withindels) throws IOException {
+        this.vcfreader = reader;
+        this.linereader = null;
+        this.ginfo = ginfo;
+        this.withindels = withindels;
+
+        // read the header, up to and including the column definitions
+        String line = vcfreader.readLine();
+        while (line != null && line.startsWith("#")) {
+            if (line.startsWith("#CHROM")) {
+                coldefs.append(line).append("\n");
+                line = vcfreader.readLine();
+                break;
+            }
+            header.append(line).append("\n");
+            line = vcfreader.readLine();
+        }
+        firstline = line;
+    }
+
+    /**
+     *
+     * @return
+     *
+     * the next variant in the file that meets the withindels criteria, or null
+     * if the file has no more variants.
+     *
+     * @throws IOException
+     */
+    public VCFEntry readNext() throws IOException {
+        if (nextentry != null) {
+            VCFEntry ans = nextentry;
+            nextentry = null;
+            return ans;
+        }
+        if (linereader != null) {
+            return readNextBytes();
+        }
+
+        String line = readLine();
+        while (line != null) {
+            if (!line.isEmpty()) {
+                VCFEntry nowentry = new VCFEntry(line, ginfo);
+                // return it if the variant is a substitution or if indels are explicitly allowed
+                if (withindels || !nowentry.isIndel()) {
+                    return nowentry;
+                }
+            }
+            line = readLine();
+        }
+        return null;
+    }
+
+    /**
+     * byte-level implementation of readNext
+     */
+    private VCFEntry readNextBytes() throws IOException {
+        ByteLine line = firstbyteline;
+        firstbyteline = null;
+        if (line == null) {
+            line = linereader.readLine();
+        }
+        while (line != null) {
+            if (!line.isEmpty()) {
+                if (withindels) {
+                    return new VCFEntry(line.toString(), ginfo);
+                }
+                // ref and alt are in columns 3 and 4
+                if (line.tokenize('\t', 6) > 4) {
+                    if (!isIndel(line)) {
+                        return new VCFEntry(line.toString(), ginfo);
+                    }
+                } else {
+                    // short lines are left to VCFEntry
+                    VCFEntry nowentry = new VCFEntry(line.toString(), ginfo);
+                    if (!nowentry.isIndel()) {
+                        return nowentry;
+                    }
+                }
+            }
+            line = linereader.readLine();
+        }
+        return null;
+    }
+
+    /**
+     * same as VCFEntry.isIndel, but working on a tokenized line
+     *
+     * @param line
+     * @return
+     */
+    private static boolean isIndel(ByteLine line) {
+        for (int field = 3; field <= 4; field++) {
+            int toklen = 0;
+            for (int i = line.getFieldStart(field), end = line.getFieldEnd(field); i < end; i++) {
+                if (line.byteAt(i) == ',') {
+                    toklen = 0;
+                } else if (++toklen > 1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String readLine() throws IOException {
+        if (firstline != null) {
+            String ans = firstline;
+            firstline = null;
+            return ans;
+        }
+        return vcfreader.readLine();
+    }
+
+    /**
+     *
+     * @return
+     *
+     * true if the file contains another variant. Errors while reading the file
+     * are reported as runtime exceptions.
+     *
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextentry == null) {
+            try {
+                nextentry = readNext();
+            } catch (IOException ex) {
+                throw new RuntimeException("Error reading vcf file: " + ex.getMessage(), ex);
+            }
+        }
+        return nextentry != null;
+    }
+
+    @Override
+    public VCFEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        VCFEntry ans = nextentry;
+        nextentry = null;
+        return ans;
+    }
+
+    /**
+     * the reader is read-only, so this is not supported.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("VCFReader does not support remove()");
+    }
+
+    public String getHeader() {
+        return header.toString();
+    }
+
+    public String getColDefLine() {
+        return coldefs.toString();
+    }
+
+    /**
+     * closes the underlying reader
+     */
+    public void close() {
+        try {
+            if (linereader != null) {
+                linereader.close();
+            } else {
+                vcfreader.close();
+            }
+        } catch (Exception ex) {
+        }
+        firstline = null;
+        firstbyteline = null;
+        nextentry = null;
+    }
+}